@@ -0,0 +1,50 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.service.AvatarPreviewService;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvatarPreviewBenchmark {
+
+    @Param({"200", "800", "2000"})
+    private int width;
+
+    private Path image;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage source = new BufferedImage(width, width * 3 / 4, BufferedImage.TYPE_3BYTE_BGR);
+        Random random = new Random(42);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                int noise = random.nextInt(32);
+                source.setRGB(x, y, ((x + noise) & 0xFF) << 16 | ((y + noise) & 0xFF) << 8 | (x ^ y) & 0xFF);
+            }
+        }
+        image = Files.createTempFile("avatar-", ".jpg");
+        ImageIO.write(source, "jpg", image.toFile());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(image);
+    }
+
+    @Benchmark
+    public byte[] generateImagePreview() throws IOException {
+        return AvatarPreviewService.generateImagePreview(image);
+    }
+}
@@ -0,0 +1,128 @@
+package ru.hogwarts.school.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import net.logstash.logback.encoder.LogstashEncoder;
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.logging.LoggerSamplingFilter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одной строки лога для потока запроса: синхронная запись в файл (как было)
+ * против постановки в очередь AsyncAppender, текст против JSON и с выборкой 1 из 10.
+ * Файл вместо консоли, чтобы вывод не смешивался с отчетом JMH; запись при этом такая же — системный вызов на событие.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LoggingBenchmark {
+
+    public enum Mode {
+        SYNC_PLAIN, ASYNC_PLAIN, ASYNC_JSON, ASYNC_JSON_SAMPLED
+    }
+
+    private static final String PATTERN = "%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p --- [%15.15t] [%X{requestId:-}] "
+            + "%-40.40logger{39} : %m%n";
+
+    @Param({"SYNC_PLAIN", "ASYNC_PLAIN", "ASYNC_JSON", "ASYNC_JSON_SAMPLED"})
+    private Mode mode;
+
+    private LoggerContext context;
+    private Logger logger;
+    private Path file;
+
+    @State(Scope.Thread)
+    public static class Request {
+        private int age;
+
+        @Setup
+        public void setUp(LoggingBenchmark benchmark) {
+            benchmark.context.getMDCAdapter().put("requestId", Long.toHexString(Thread.currentThread().getId()));
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("logging-benchmark-", ".log");
+        context = new LoggerContext();
+        context.setMDCAdapter(new LogbackMDCAdapter());
+        context.start();
+
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(file.toString());
+        fileAppender.setEncoder(mode == Mode.SYNC_PLAIN || mode == Mode.ASYNC_PLAIN ? plainEncoder() : jsonEncoder());
+        fileAppender.start();
+
+        Appender<ILoggingEvent> appender = fileAppender;
+        if (mode != Mode.SYNC_PLAIN) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setNeverBlock(true);
+            async.addAppender(fileAppender);
+            async.start();
+            appender = async;
+        }
+        if (mode == Mode.ASYNC_JSON_SAMPLED) {
+            LoggerSamplingFilter filter = new LoggerSamplingFilter();
+            filter.setContext(context);
+            filter.setLoggers("ru.hogwarts.school.service.StudentService.read");
+            filter.setRate(10);
+            filter.start();
+            context.addTurboFilter(filter);
+        }
+
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+        logger = context.getLogger("ru.hogwarts.school.service.StudentService.read");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.stop();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void parameterized(Request request) {
+        logger.info("Поиск студентов по age: {}", request.age++);
+    }
+
+    @Benchmark
+    public void eagerConcatenation(Request request) {
+        logger.info("Поиск аватара по id студента: " + request.age++);
+    }
+
+    private Encoder<ILoggingEvent> plainEncoder() {
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        return encoder;
+    }
+
+    private Encoder<ILoggingEvent> jsonEncoder() {
+        LogstashEncoder encoder = new LogstashEncoder();
+        encoder.setContext(context);
+        encoder.start();
+        return encoder;
+    }
+}
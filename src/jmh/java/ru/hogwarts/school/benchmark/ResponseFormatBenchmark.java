@@ -0,0 +1,75 @@
+package ru.hogwarts.school.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация и разбор списка студентов в форматах, которые отдает API.
+ * Размер ответа печатается в лог форка при подготовке каждого формата.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseFormatBenchmark {
+
+    private static final TypeReference<List<Student>> STUDENT_LIST = new TypeReference<>() {
+    };
+
+    @Param({"json", "xml", "smile", "cbor"})
+    private String format;
+
+    @Param({"10000"})
+    private int size;
+
+    private ObjectMapper mapper;
+    private List<Student> students;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = switch (format) {
+            case "json" -> new ObjectMapper();
+            case "xml" -> new XmlMapper();
+            case "smile" -> new SmileMapper();
+            case "cbor" -> new CBORMapper();
+            default -> throw new IllegalArgumentException(format);
+        };
+        List<Faculty> faculties = List.of(
+                new Faculty(1, "Гриффиндор", "Красный"),
+                new Faculty(2, "Слизерин", "Зеленый"),
+                new Faculty(3, "Когтевран", "Синий"),
+                new Faculty(4, "Пуффендуй", "Желтый"));
+        students = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Student student = new Student(i, "Student " + i, 11 + i % 7);
+            student.setFaculty(faculties.get(i % faculties.size()));
+            students.add(student);
+        }
+        payload = mapper.writeValueAsBytes(students);
+        System.out.printf("%n%s: %d students, %d bytes%n", format, size, payload.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return mapper.writeValueAsBytes(students);
+    }
+
+    @Benchmark
+    public List<Student> deserialize() throws IOException {
+        return mapper.readValue(payload, STUDENT_LIST);
+    }
+}
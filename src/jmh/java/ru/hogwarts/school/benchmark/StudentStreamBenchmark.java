@@ -0,0 +1,122 @@
+package ru.hogwarts.school.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Имена студентов на "A", средний возраст и самое длинное название факультета на разных объемах данных.
+ * Методы сервисов вызываются поверх заглушек репозиториев, которые сразу отдают результат запроса,
+ * то есть замеряется только работа в JVM; планы самих запросов проверяет QueryPlanTest.
+ * Методы legacy* - прежние конвейеры поверх findAll() для сравнения: столько стоила обработка
+ * уже загруженных сущностей, без учета чтения таблицы из базы.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StudentStreamBenchmark {
+
+    private static final String PREFIX = "A";
+    private static final String[] NAMES = {"Artem", "Andrey", "Abber", "Bob", "Jim", "Varg", "John", "Oleg"};
+
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    private List<Student> students;
+    private List<Faculty> faculties;
+    private StudentService studentService;
+    private FacultyService facultyService;
+
+    @Setup
+    public void setUp() {
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)
+                .setLevel(Level.WARN);
+        Random random = new Random(42);
+        students = new ArrayList<>(size);
+        faculties = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            students.add(new Student(i, NAMES[random.nextInt(NAMES.length)] + i, 16 + random.nextInt(30)));
+            faculties.add(new Faculty(i, "Faculty " + "x".repeat(random.nextInt(40)), "Синий"));
+        }
+
+        StudentRepository studentRepository = repository(StudentRepository.class, Map.of(
+                "findUpperCaseNamesStartingWith", legacyGetAllStudentStartWithA(),
+                "findAverageAge", students.stream().mapToInt(Student::getAge).average().orElse(0)));
+        studentService = new StudentService(studentRepository, null, null, null, null, null, null, null,
+                DataSize.ofKilobytes(300));
+        FacultyRepository facultyRepository = repository(FacultyRepository.class, Map.of(
+                "findMaxLengthName", Optional.of(legacyGetMaxLengthNameOfFaculty())));
+        facultyService = new FacultyService(facultyRepository, null);
+    }
+
+    /**
+     * Репозиторий, который по имени метода отдает готовый результат запроса.
+     */
+    private static <T> T repository(Class<T> type, Map<String, Object> results) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> results.get(method.getName())));
+    }
+
+    @Benchmark
+    public List<String> getAllStudentStartWithA() {
+        return studentService.getAllStudentStartWithA();
+    }
+
+    @Benchmark
+    public int getAverageAgeOfStudentsFromStream() {
+        return studentService.getAverageAgeOfStudentsFromStream();
+    }
+
+    @Benchmark
+    public String getMaxLengthNameOfFaculty() {
+        return facultyService.getMaxLengthNameOfFaculty();
+    }
+
+    @Benchmark
+    public List<String> legacyGetAllStudentStartWithA() {
+        return students.stream()
+                .filter(s -> s.getName().startsWith(PREFIX))
+                .map(s -> s.getName().toUpperCase())
+                .sorted(String::compareTo)
+                .toList();
+    }
+
+    @Benchmark
+    public int legacyGetAverageAgeOfStudentsFromStream() {
+        return (int) students.stream()
+                .mapToInt(Student::getAge)
+                .average().orElse(0);
+    }
+
+    @Benchmark
+    public String legacyGetMaxLengthNameOfFaculty() {
+        String[] result = {""};
+        faculties.stream()
+                .map(Faculty::getName)
+                .forEach(s -> {
+                    if (result[0].length() < s.length()) {
+                        result[0] = s;
+                    }
+                });
+        return result[0];
+    }
+}
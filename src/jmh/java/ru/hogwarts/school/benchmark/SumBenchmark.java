@@ -0,0 +1,57 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hogwarts.school.service.SumService;
+import ru.hogwarts.school.service.SumStrategy;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SumBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Strategies {
+
+        @Param({"1000", "1000000", "100000000"})
+        private long n;
+
+        @Param({"SEQUENTIAL", "PARALLEL_STREAM", "FORK_JOIN", "CLOSED_FORM"})
+        private SumStrategy strategy;
+
+        private ForkJoinPool pool;
+        private SumService sumService;
+
+        @Setup
+        public void setUp() {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            sumService = new SumService(pool, Long.MAX_VALUE, "closed-form", 1);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public long sum(Strategies state) {
+        return state.sumService.compute(state.n, state.strategy).sum();
+    }
+
+    /**
+     * Прежняя реализация /port/sum для сравнения.
+     */
+    @Benchmark
+    public Integer legacyStreamIterate() {
+        return Stream.iterate(1, a -> a + 1)
+                .limit(1_000_000)
+                .parallel()
+                .reduce(0, Integer::sum);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class AvatarPreviewExecutorConfig {
+
+    /**
+     * Ограниченный пул для построения превью. При переполнении очереди задачу выполняет
+     * вызывающий поток, тем самым притормаживая загрузку новых аватаров.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor avatarPreviewExecutor(@Value("${avatars.preview.pool-size:2}") int poolSize,
+                                                        @Value("${avatars.preview.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("avatar-preview-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
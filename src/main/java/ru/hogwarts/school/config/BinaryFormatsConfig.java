@@ -0,0 +1,46 @@
+package ru.hogwarts.school.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Бинарные форматы для внутренних клиентов: application/x-jackson-smile и application/cbor.
+ * Мапперы собираются из того же билдера, что и JSON, поэтому поля сериализуются одинаково.
+ * Конвертеры регистрируются только в MVC, а не бинами: иначе Spring Boot отдаст их и в RestTemplate,
+ * где CBOR-конвертер окажется первым среди конвертеров частей multipart и сломает отправку файлов.
+ */
+@Configuration
+public class BinaryFormatsConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> builderProvider;
+
+    public BinaryFormatsConfig(ObjectProvider<Jackson2ObjectMapperBuilder> builderProvider) {
+        this.builderProvider = builderProvider;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter
+                || converter instanceof MappingJackson2CborHttpMessageConverter);
+        int afterJson = 0;
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+                afterJson = i + 1;
+            }
+        }
+        converters.add(afterJson, new MappingJackson2CborHttpMessageConverter(
+                builderProvider.getObject().factory(new CBORFactory()).build()));
+        converters.add(afterJson, new MappingJackson2SmileHttpMessageConverter(
+                builderProvider.getObject().factory(new SmileFactory()).build()));
+    }
+}
@@ -0,0 +1,26 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.hogwarts.school.controller.OpenPreviews;
+
+/**
+ * Освобождает превью из кеша, которые не были записаны в ответ, см. {@link OpenPreviews}.
+ */
+@Configuration
+public class PreviewReleaseConfig implements WebMvcConfigurer {
+
+    private final OpenPreviews.ReleaseInterceptor releaseInterceptor = new OpenPreviews.ReleaseInterceptor();
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(releaseInterceptor);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(releaseInterceptor);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.hogwarts.school.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+@Configuration
+public class SumComputeConfig {
+
+    /**
+     * Отдельный ForkJoinPool для вычислений /port/sum, чтобы они не занимали общий пул
+     * и потоки обработки запросов. Параллелизм 0 означает число доступных процессоров.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool sumForkJoinPool(@Value("${sum.fork-join.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("sum-compute-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+}
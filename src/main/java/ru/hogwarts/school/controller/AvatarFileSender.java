@@ -0,0 +1,132 @@
+package ru.hogwarts.school.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.hogwarts.school.model.Avatar;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * Отдает файл аватара с поддержкой условных запросов и Range. Если контейнер умеет
+ * sendfile (Tomcat NIO), файл передается ядром напрямую в сокет, иначе через
+ * {@link FileChannel#transferTo}. Заголовок Cache-Control выбирает вызывающий: адрес без хеша
+ * содержимого меняет смысл при новой загрузке и должен перепроверяться.
+ */
+class AvatarFileSender {
+
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    void send(Avatar avatar, CacheControl cacheControl, HttpServletRequest request,
+              HttpServletResponse response) throws IOException {
+        Path path = Path.of(avatar.getFilePath());
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        long length;
+        String etag;
+        if (avatar.getContentHash() != null) {
+            // файл адресуется хешем содержимого, поэтому для ответа 304 обращаться к диску не нужно
+            etag = "\"" + avatar.getContentHash() + "\"";
+            long lastModified = avatar.getUploadedAt() == null ? -1 : avatar.getUploadedAt().toEpochMilli();
+            if (webRequest.checkNotModified(etag, lastModified)) {
+                return;
+            }
+            length = avatar.getFileSize();
+        } else {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                response.sendError(HttpStatus.NOT_FOUND.value());
+                return;
+            }
+            length = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+            if (webRequest.checkNotModified(etag, lastModified)) {
+                return;
+            }
+        }
+        response.setContentType(avatar.getMediaType());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && isRangeApplicable(request, etag)) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length);
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (HttpMethod.HEAD.matches(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            Path realPath;
+            try {
+                realPath = path.toRealPath();
+            } catch (NoSuchFileException e) {
+                response.sendError(HttpStatus.NOT_FOUND.value());
+                return;
+            }
+            request.setAttribute(SENDFILE_FILENAME, realPath.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        try (channel) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (count > 0) {
+                long transferred = channel.transferTo(position, count, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                count -= transferred;
+            }
+        }
+    }
+
+    private boolean isRangeApplicable(HttpServletRequest request, String etag) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        return ifRange == null || ifRange.equals(etag);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.hogwarts.school.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.service.AvatarPreviewCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Отдает несколько превью одним ответом multipart/mixed. У каждой части есть Content-Type,
+ * Content-Length и Content-Location с адресом отдельного превью студента, по нему клиент
+ * сопоставляет часть со студентом.
+ */
+final class AvatarPreviewParts {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private AvatarPreviewParts() {
+    }
+
+    static ResponseEntity<StreamingResponseBody> of(Map<Long, AvatarPreviewCache.CachedPreview> previews) {
+        return of(previews, null);
+    }
+
+    /**
+     * То же со ссылкой на следующую страницу в заголовке Link с rel="next", если она есть.
+     */
+    static ResponseEntity<StreamingResponseBody> of(Map<Long, AvatarPreviewCache.CachedPreview> previews,
+                                                    String nextUrl) {
+        OpenPreviews.register(previews.values());
+        String boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+        MediaType contentType = new MediaType("multipart", "mixed", Map.of("boundary", boundary));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(contentType);
+        if (nextUrl != null) {
+            response.header(HttpHeaders.LINK, "<" + nextUrl + ">; rel=\"next\"");
+        }
+        return response.body(os -> write(previews, boundary, os));
+    }
+
+    /**
+     * Превью из кеша держат его блоки, поэтому закрываются все, даже если запись оборвалась.
+     * Если запись не началась, их закроет {@link OpenPreviews}.
+     */
+    private static void write(Map<Long, AvatarPreviewCache.CachedPreview> previews, String boundary,
+                              OutputStream os) throws IOException {
+        byte[] delimiter = ("--" + boundary + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        try {
+            for (Map.Entry<Long, AvatarPreviewCache.CachedPreview> entry : previews.entrySet()) {
+                AvatarPreviewCache.CachedPreview preview = entry.getValue();
+                String mediaType = preview.mediaType() == null ? MediaType.APPLICATION_OCTET_STREAM_VALUE : preview.mediaType();
+                os.write(delimiter);
+                os.write(("Content-Type: " + mediaType + "\r\n"
+                        + "Content-Length: " + preview.length() + "\r\n"
+                        + "Content-Location: /student/" + entry.getKey() + "/avatar/preview\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                preview.writeTo(os);
+                os.write(CRLF);
+            }
+            os.write(("--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            previews.values().forEach(AvatarPreviewCache.CachedPreview::close);
+        }
+    }
+}
@@ -1,22 +1,34 @@
 package ru.hogwarts.school.controller;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.dto.AvatarMetadataPage;
+import ru.hogwarts.school.dto.AvatarPreviewPage;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.service.AvatarService;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 @RestController
 @RequestMapping("/avatar")
 public class AvatarTController {
 
     private final AvatarService avatarService;
+    private final int maxPreviewBatch;
+    private final int maxMetadataPage;
 
 
-    public AvatarTController(AvatarService avatarService) {
+    public AvatarTController(AvatarService avatarService,
+                             @Value("${avatars.previews.max-batch:200}") int maxPreviewBatch,
+                             @Value("${avatars.metadata.max-page:500}") int maxMetadataPage) {
         this.avatarService = avatarService;
+        this.maxPreviewBatch = maxPreviewBatch;
+        this.maxMetadataPage = maxMetadataPage;
     }
 
     @GetMapping
@@ -24,4 +36,48 @@ public class AvatarTController {
                                                            @RequestParam("size") Integer pageSize) {
         return ResponseEntity.ok(avatarService.getPageOfAvatars(pageNumber, pageSize));
     }
+
+    /**
+     * Метаданные аватаров страницами по id, не больше avatars.metadata.max-page за ответ.
+     */
+    @GetMapping("/metadata")
+    public ResponseEntity<AvatarMetadataPage> findAvatarMetadata(@RequestParam(defaultValue = "0") Long afterId,
+                                                                 @RequestParam(defaultValue = "50") Integer size) {
+        if (size < 1 || size > maxMetadataPage) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(avatarService.getAvatarMetadata(afterId, size));
+    }
+
+    /**
+     * Превью для страницы со списком студентов одним ответом multipart/mixed вместо запроса на каждого.
+     * Студенты без готового превью в ответ не попадают.
+     */
+    @GetMapping(value = "/previews", params = "studentIds")
+    public ResponseEntity<StreamingResponseBody> findPreviews(@RequestParam List<Long> studentIds) {
+        Set<Long> ids = new LinkedHashSet<>(studentIds);
+        if (ids.isEmpty() || ids.size() > maxPreviewBatch) {
+            return ResponseEntity.badRequest().build();
+        }
+        return AvatarPreviewParts.of(avatarService.findPreviews(ids));
+    }
+
+    /**
+     * Превью студентов факультета страницами по id студента, не больше avatars.previews.max-batch за ответ.
+     * Адрес следующей страницы приходит в заголовке Link.
+     */
+    @GetMapping(value = "/previews", params = "facultyId")
+    public ResponseEntity<StreamingResponseBody> findFacultyPreviews(@RequestParam long facultyId,
+                                                                     @RequestParam(defaultValue = "0") long afterStudentId,
+                                                                     @RequestParam(required = false) Integer size) {
+        int pageSize = size == null ? maxPreviewBatch : size;
+        if (pageSize < 1 || pageSize > maxPreviewBatch) {
+            return ResponseEntity.badRequest().build();
+        }
+        AvatarPreviewPage page = avatarService.findFacultyPreviews(facultyId, afterStudentId, pageSize);
+        String nextUrl = page.nextAfterStudentId() == null ? null
+                : "/avatar/previews?facultyId=" + facultyId + "&afterStudentId=" + page.nextAfterStudentId()
+                + "&size=" + pageSize;
+        return AvatarPreviewParts.of(page.previews(), nextUrl);
+    }
 }
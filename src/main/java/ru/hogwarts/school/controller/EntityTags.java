@@ -0,0 +1,39 @@
+package ru.hogwarts.school.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Слабые ETag для JSON-ресурсов: одна метка подходит для любого согласованного формата ответа.
+ */
+final class EntityTags {
+
+    private static final Pattern VERSION = Pattern.compile("(?:W/)?\"(\\d{1,18})(?:\\.\\d+)?\"");
+
+    private EntityTags() {
+    }
+
+    static String of(Object version) {
+        return "W/\"" + version + "\"";
+    }
+
+    /**
+     * Версия сущности из If-Match: число до первой точки (у студента за ней идет версия факультета).
+     * Без заголовка или со значением * возвращает null; нераспознанная метка не совпадет ни с одной версией.
+     */
+    static Long expectedVersion(WebRequest request) {
+        String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Matcher matcher = VERSION.matcher(ifMatch.trim());
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1L;
+    }
+
+    static boolean isConditional(WebRequest request) {
+        return request.getHeader(HttpHeaders.IF_NONE_MATCH) != null;
+    }
+}
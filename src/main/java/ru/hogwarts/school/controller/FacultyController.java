@@ -1,29 +1,55 @@
 package ru.hogwarts.school.controller;
 
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.dto.PatchResult;
+import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.EntityChangeStamps;
 import ru.hogwarts.school.service.FacultyService;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 @RestController
 @RequestMapping("/faculty")
 public class FacultyController {
     private final FacultyService facultyService;
-    public FacultyController(FacultyService facultyService) {
+    private final EntityChangeStamps entityChangeStamps;
+    public FacultyController(FacultyService facultyService, EntityChangeStamps entityChangeStamps) {
         this.facultyService = facultyService;
+        this.entityChangeStamps = entityChangeStamps;
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<List<FacultySummary>> getSummaries(WebRequest request) {
+        String etag = EntityTags.of(entityChangeStamps.getStamp(Faculty.class, Student.class, Avatar.class));
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(facultyService.getSummaries());
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<Faculty> getFacultyInfo(@PathVariable Long id) {
+    public ResponseEntity<Faculty> getFacultyInfo(@PathVariable Long id, WebRequest request) {
+        if (EntityTags.isConditional(request)) {
+            Long version = facultyService.findVersion(id);
+            if (version != null && request.checkNotModified(EntityTags.of(version))) {
+                return null;
+            }
+        }
         Faculty faculty = facultyService.findFaculty(id);
         if (faculty == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(faculty);
+        return ResponseEntity.ok().eTag(EntityTags.of(faculty.getVersion())).body(faculty);
     }
 
     @PostMapping
@@ -40,6 +66,28 @@ public class FacultyController {
         return ResponseEntity.ok(foundFaculty);
     }
 
+    /**
+     * Частичное изменение одним UPDATE. If-Match с ETag из GET включает проверку версии:
+     * 409, если факультет уже изменен, 404, если его нет.
+     */
+    @PatchMapping("{id}")
+    public ResponseEntity<Void> patchFaculty(@PathVariable long id, @RequestBody FacultyPatch patch, WebRequest request) {
+        if (patch.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        PatchResult result;
+        try {
+            result = facultyService.patchFaculty(id, patch, EntityTags.expectedVersion(request));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return switch (result.status()) {
+            case APPLIED -> ResponseEntity.noContent().eTag(EntityTags.of(result.version())).build();
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+            case CONFLICT -> ResponseEntity.status(HttpStatus.CONFLICT).build();
+        };
+    }
+
     @DeleteMapping("{id}")
     public ResponseEntity<Void> deleteFaculty(@PathVariable Long id) {
         facultyService.deleteFaculty(id);
@@ -47,9 +95,14 @@ public class FacultyController {
     }
 
     @GetMapping
-    public ResponseEntity<Collection<Faculty>> findFaculties(@RequestParam(required = false) String color) {
+    public ResponseEntity<Collection<Faculty>> findFaculties(@RequestParam(required = false) String color,
+                                                             WebRequest request) {
         if (color != null && !color.isBlank()) {
-            return ResponseEntity.ok(facultyService.findByColor(color));
+            String etag = EntityTags.of(entityChangeStamps.getStamp(Faculty.class));
+            if (request.checkNotModified(etag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(etag).body(facultyService.findByColor(color));
         }
         return ResponseEntity.ok(Collections.emptyList());
     }
@@ -1,20 +1,31 @@
 package ru.hogwarts.school.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.dto.SumReport;
 import ru.hogwarts.school.service.InfoService;
+import ru.hogwarts.school.service.SumService;
+import ru.hogwarts.school.service.SumStrategy;
 
-import java.util.stream.Stream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/port")
 public class InfoController {
     private final InfoService infoService;
+    private final SumService sumService;
     @Autowired
-    public InfoController(InfoService infoService) {
+    public InfoController(InfoService infoService, SumService sumService) {
         this.infoService = infoService;
+        this.sumService = sumService;
     }
 
     @GetMapping
@@ -23,10 +34,25 @@ public class InfoController {
     }
 
     @GetMapping("/sum")
-    public Integer getSum() {
-        return Stream.iterate(1, a -> a + 1)
-                .limit(1_000_000)
-                .parallel()
-                .reduce(0, Integer::sum);
+    public CompletableFuture<ResponseEntity<SumReport>> getSum(@RequestParam(defaultValue = "1000000") long n,
+                                                               @RequestParam(required = false) List<String> strategy) {
+        List<SumStrategy> strategies;
+        try {
+            strategies = strategy == null || strategy.isEmpty()
+                    ? List.of(sumService.getDefaultStrategy())
+                    : strategy.stream().map(SumStrategy::of).distinct().toList();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        if (!sumService.isValidRange(n)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        try {
+            return sumService.sum(n, strategies).thenApply(ResponseEntity::ok);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build());
+        }
     }
 }
@@ -0,0 +1,69 @@
+package ru.hogwarts.school.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.HandlerInterceptor;
+import ru.hogwarts.school.service.AvatarPreviewCache;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Превью, отданные в ответ текущего запроса. Тело ответа закрывает их после записи, но может
+ * не запуститься вовсе: клиент отключился, истек таймаут, ошибка до начала записи. Поэтому превью
+ * еще раз закрываются по завершении запроса; повторное закрытие ничего не делает.
+ */
+public final class OpenPreviews {
+
+    private static final String ATTRIBUTE = OpenPreviews.class.getName();
+
+    private OpenPreviews() {
+    }
+
+    static void register(Collection<AvatarPreviewCache.CachedPreview> previews) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Queue<AvatarPreviewCache.CachedPreview> open = (Queue<AvatarPreviewCache.CachedPreview>)
+                attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (open == null) {
+            open = new ConcurrentLinkedQueue<>();
+            attributes.setAttribute(ATTRIBUTE, open, RequestAttributes.SCOPE_REQUEST);
+        }
+        open.addAll(previews);
+    }
+
+    private static void closeAll(Object open) {
+        if (open instanceof Queue<?> previews) {
+            Object preview;
+            while ((preview = previews.poll()) != null) {
+                ((AvatarPreviewCache.CachedPreview) preview).close();
+            }
+        }
+    }
+
+    /**
+     * Закрывает превью запроса после его обработки, в том числе асинхронной.
+     */
+    public static final class ReleaseInterceptor implements HandlerInterceptor, CallableProcessingInterceptor {
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                    Exception ex) {
+            closeAll(request.getAttribute(ATTRIBUTE));
+        }
+
+        @Override
+        public <T> void afterCompletion(NativeWebRequest request, Callable<T> task) {
+            closeAll(request.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+        }
+    }
+}
@@ -1,41 +1,80 @@
 package ru.hogwarts.school.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.dto.PatchResult;
+import ru.hogwarts.school.dto.StudentBatchResult;
+import ru.hogwarts.school.dto.StudentPatch;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.AvatarDerivativeService;
+import ru.hogwarts.school.service.AvatarPreviewCache;
+import ru.hogwarts.school.service.AvatarPreviewFailedException;
+import ru.hogwarts.school.service.AvatarPreviewService;
+import ru.hogwarts.school.service.EntityChangeStamps;
+import ru.hogwarts.school.service.StudentBatchService;
+import ru.hogwarts.school.service.StudentExportFormat;
+import ru.hogwarts.school.service.StudentExportService;
 import ru.hogwarts.school.service.StudentService;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/student")
 public class StudentController {
     private final StudentService studentService;
-    public StudentController(StudentService studentService) {
+    private final StudentExportService studentExportService;
+    private final StudentBatchService studentBatchService;
+    private final EntityChangeStamps entityChangeStamps;
+    private final AvatarDerivativeService avatarDerivativeService;
+    private final CacheControl versionedAvatarCacheControl;
+    private final AvatarFileSender avatarFileSender = new AvatarFileSender();
+    public StudentController(StudentService studentService, StudentExportService studentExportService,
+                             StudentBatchService studentBatchService, EntityChangeStamps entityChangeStamps,
+                             AvatarDerivativeService avatarDerivativeService,
+                             @Value("${avatars.cache.max-age:P365D}") Duration avatarMaxAge) {
         this.studentService = studentService;
+        this.studentExportService = studentExportService;
+        this.studentBatchService = studentBatchService;
+        this.entityChangeStamps = entityChangeStamps;
+        this.avatarDerivativeService = avatarDerivativeService;
+        this.versionedAvatarCacheControl = CacheControl.maxAge(avatarMaxAge).cachePublic().immutable();
     }
 
     @GetMapping("{id}")
-    public ResponseEntity<Student> getStudentInfo(@PathVariable Long id) {
+    public ResponseEntity<Student> getStudentInfo(@PathVariable Long id, WebRequest request) {
+        if (EntityTags.isConditional(request)) {
+            String version = studentService.findRepresentationVersion(id);
+            if (version != null && request.checkNotModified(EntityTags.of(version))) {
+                return null;
+            }
+        }
         Student student = studentService.findStudent(id);
         if (student == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(student);
+        return ResponseEntity.ok()
+                .eTag(EntityTags.of(student.getRepresentationVersion()))
+                .body(student);
     }
 
     @PostMapping
@@ -52,6 +91,38 @@ public class StudentController {
         return ResponseEntity.ok(foundStudent);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<List<StudentBatchResult>> createStudents(@RequestBody List<Student> students) {
+        return ResponseEntity.ok(studentBatchService.addStudents(students));
+    }
+
+    @PutMapping("/batch")
+    public ResponseEntity<List<StudentBatchResult>> editStudents(@RequestBody List<Student> students) {
+        return ResponseEntity.ok(studentBatchService.editStudents(students));
+    }
+
+    /**
+     * Частичное изменение одним UPDATE. If-Match с ETag из GET включает проверку версии:
+     * 409, если студент уже изменен, 404, если его нет.
+     */
+    @PatchMapping("{id}")
+    public ResponseEntity<Void> patchStudent(@PathVariable long id, @RequestBody StudentPatch patch, WebRequest request) {
+        if (patch.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        PatchResult result;
+        try {
+            result = studentService.patchStudent(id, patch, EntityTags.expectedVersion(request));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return switch (result.status()) {
+            case APPLIED -> ResponseEntity.noContent().eTag(EntityTags.of(result.version())).build();
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+            case CONFLICT -> ResponseEntity.status(HttpStatus.CONFLICT).build();
+        };
+    }
+
     @DeleteMapping("{id}")
     public ResponseEntity<Void> deleteStudent(@PathVariable Long id) {
         studentService.deleteStudent(id);
@@ -59,16 +130,18 @@ public class StudentController {
     }
 
     @GetMapping
-    public ResponseEntity<Collection<Student>> findStudents(@RequestParam(required = false) int age) {
+    public ResponseEntity<Collection<Student>> findStudents(@RequestParam(required = false) int age,
+                                                           WebRequest request) {
         if (age > 0) {
-            return ResponseEntity.ok(studentService.findByAge(age));
+            return withStudentsStamp(request, () -> studentService.findByAge(age));
         }
         return ResponseEntity.ok(Collections.emptyList());
     }
 
     @GetMapping("/findByAgeBetween")
-    public ResponseEntity<Collection<Student>> findStudentByAgeBetween(@RequestParam int min, @RequestParam int max) {
-        return ResponseEntity.ok(studentService.findStudentByAgeBetween(min, max));
+    public ResponseEntity<Collection<Student>> findStudentByAgeBetween(@RequestParam int min, @RequestParam int max,
+                                                                      WebRequest request) {
+        return withStudentsStamp(request, () -> studentService.findStudentByAgeBetween(min, max));
     }
 
     @GetMapping("/getFacultyOfStudent/{id}")
@@ -77,43 +150,121 @@ public class StudentController {
     }
 
     @GetMapping("/studentsOfFaculty/{id}")
-    public ResponseEntity<Collection<Student>> getStudentsOfFaculty(@PathVariable long id) {
-        return ResponseEntity.ok(studentService.getStudentsOfFaculty(id));
+    public ResponseEntity<Collection<Student>> getStudentsOfFaculty(@PathVariable long id, WebRequest request) {
+        return withStudentsStamp(request, () -> studentService.getStudentsOfFaculty(id));
     }
 
     @PostMapping(value = "/{id}/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<String> uploadAvatar(@PathVariable Long id, @RequestParam MultipartFile avatar) throws IOException {
-        if (avatar.getSize() > 1024 * 300) {
-            return ResponseEntity.badRequest().body("File is too big");
-        }
         studentService.uploadAvatar(id, avatar);
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * Multipart разбирается лениво, при привязке параметра, поэтому превышение
+     * spring.servlet.multipart.max-file-size во время чтения тела попадает сюда.
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<String> handleTooBigAvatar() {
+        return ResponseEntity.badRequest().body("File is too big");
+    }
+
+    /**
+     * Превью не будет, пока аватар не загрузят заново, поэтому клиент получает окончательную
+     * ошибку вместо 202 с повтором.
+     */
+    @ExceptionHandler(AvatarPreviewFailedException.class)
+    public ResponseEntity<String> handleFailedPreview(AvatarPreviewFailedException e) {
+        return ResponseEntity.unprocessableEntity().body(e.getMessage());
+    }
+
+    /**
+     * Превью аватара. Без параметра w — превью из базы, построенное при загрузке;
+     * с другой шириной из списка avatars.preview.widths — копия с диска, построенная при первом запросе.
+     * Параметр v с хешем содержимого делает адрес неизменяемым, см. {@link #avatarCacheControl}.
+     */
     @GetMapping(value = "/{id}/avatar/preview")
-    public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id) {
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> downloadAvatar(@PathVariable Long id,
+                                                                                   @RequestParam(required = false) Integer w,
+                                                                                   @RequestParam(required = false) String v,
+                                                                                   WebRequest request) {
+        if (w == null || w == AvatarPreviewService.DEFAULT_WIDTH) {
+            return CompletableFuture.completedFuture(storedPreview(studentService.findAvatarPreview(id)));
+        }
         Avatar avatar = studentService.findAvatar(id);
+        if (!avatarDerivativeService.isSupportedWidth(w)) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        String etag = avatar.getContentHash() == null ? null : "\"" + avatar.getContentHash() + "-w" + w + "\"";
+        CacheControl cacheControl = avatarCacheControl(avatar, v);
+        if (etag != null && request.checkNotModified(etag)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .build());
+        }
+        MediaType mediaType = MediaType.parseMediaType(avatar.getMediaType());
+        return avatarDerivativeService.getPreview(avatar, w)
+                .thenApply(preview -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .contentType(mediaType)
+                            .contentLength(preview.length)
+                            .cacheControl(cacheControl);
+                    if (etag != null) {
+                        response.eTag(etag);
+                    }
+                    return response.body(os -> os.write(preview));
+                });
+    }
+
+    /**
+     * Превью из кеша пишется в ответ прямо из слабов и закрывается после записи
+     * или по завершении запроса, если запись так и не началась.
+     */
+    private ResponseEntity<StreamingResponseBody> storedPreview(AvatarPreviewCache.CachedPreview preview) {
+        if (preview == null) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+        OpenPreviews.register(List.of(preview));
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-        headers.setContentLength(avatar.getData().length);
-        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(avatar.getData());
+        headers.setContentType(MediaType.parseMediaType(preview.mediaType()));
+        headers.setContentLength(preview.length());
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(os -> {
+            try (preview) {
+                preview.writeTo(os);
+            }
+        });
     }
 
+    /**
+     * Файл аватара. Параметр v с хешем содержимого делает адрес неизменяемым, см. {@link #avatarCacheControl}.
+     */
     @GetMapping(value = "/{id}/avatar")
-    public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException {
+    public void downloadAvatar(@PathVariable Long id, @RequestParam(required = false) String v,
+                               HttpServletRequest request, HttpServletResponse response) throws IOException {
         Avatar avatar = studentService.findAvatar(id);
-        Path path = Path.of(avatar.getFilePath());
-        try (InputStream is = Files.newInputStream(path);
-             OutputStream os = response.getOutputStream()) {
-            response.setStatus(200);
-            response.setContentType(avatar.getMediaType());
-            response.setContentLength((int) avatar.getFileSize());
-            is.transferTo(os);
+        avatarFileSender.send(avatar, avatarCacheControl(avatar, v), request, response);
+    }
+
+    /**
+     * Адрес /student/{id}/avatar после новой загрузки отдает другое содержимое, поэтому кешируется
+     * только с перепроверкой по ETag. Долгий max-age и immutable получает только адрес, в параметре v
+     * которого хеш текущего содержимого: новая загрузка дает новый адрес.
+     */
+    private CacheControl avatarCacheControl(Avatar avatar, String version) {
+        if (version != null && version.equals(avatar.getContentHash())) {
+            return versionedAvatarCacheControl;
         }
+        return CacheControl.noCache().cachePublic();
     }
 
     @GetMapping(value = "/count")
-    public int getAllStudents() {
+    public int getAllStudents(@RequestParam(required = false) Long facultyId) {
+        if (facultyId != null) {
+            return studentService.getCountOfFaculty(facultyId);
+        }
         return studentService.getAllStudents();
     }
 
@@ -123,8 +274,8 @@ public class StudentController {
     }
 
     @GetMapping(value = "/lastFive")
-    public ResponseEntity<Collection<Student>> getFiveLastStudentById() {
-        return ResponseEntity.ok(studentService.getFiveLastStudentById());
+    public ResponseEntity<Collection<Student>> getFiveLastStudentById(WebRequest request) {
+        return withStudentsStamp(request, studentService::getFiveLastStudentById);
     }
 
     @GetMapping("/withA")
@@ -137,15 +288,50 @@ public class StudentController {
         return studentService.getAverageAgeOfStudentsFromStream();
     }
 
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportStudents(@RequestParam(defaultValue = "ndjson") String format) {
+        StudentExportFormat exportFormat;
+        try {
+            exportFormat = StudentExportFormat.of(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=students." + exportFormat.name().toLowerCase())
+                .body(os -> studentExportService.exportStudents(exportFormat, os));
+    }
+
     @GetMapping("/print-parallel")
-    public ResponseEntity<Void> printFirstSixStudentsParallel() {
-        studentService.printFirstSixStudentsParallel(studentService::printNameStudent);
-        return ResponseEntity.ok().build();
+    public CompletableFuture<ResponseEntity<List<String>>> printFirstSixStudentsParallel(
+            @RequestParam(defaultValue = "false") boolean await) {
+        return respondWhenDone(studentService.printFirstSixStudentsParallel(), await);
     }
 
     @GetMapping("/print-synchronized")
-    public ResponseEntity<Void> printFirstSixStudentsParallelSynchronized() {
-        studentService.printFirstSixStudentsParallel(i -> studentService.printStudentNameSynchronized());
-        return ResponseEntity.ok().build();
+    public CompletableFuture<ResponseEntity<List<String>>> printFirstSixStudentsParallelSynchronized(
+            @RequestParam(defaultValue = "false") boolean await) {
+        return respondWhenDone(studentService.printFirstSixStudentsSynchronized(), await);
+    }
+
+    /**
+     * Списки студентов помечаются счетчиками изменений таблиц студентов и факультетов. Метка читается
+     * до запроса, и при совпадении с If-None-Match сам список из базы не загружается.
+     */
+    private ResponseEntity<Collection<Student>> withStudentsStamp(WebRequest request,
+                                                                  Supplier<? extends Collection<Student>> students) {
+        String etag = EntityTags.of(entityChangeStamps.getStamp(Student.class, Faculty.class));
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(students.get());
+    }
+
+    private CompletableFuture<ResponseEntity<List<String>>> respondWhenDone(CompletableFuture<List<String>> work,
+                                                                          boolean await) {
+        return await
+                ? work.thenApply(ResponseEntity::ok)
+                : CompletableFuture.completedFuture(ResponseEntity.ok().build());
     }
 }
@@ -0,0 +1,23 @@
+package ru.hogwarts.school.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.dto.TaskExecutorStatistics;
+import ru.hogwarts.school.service.BackgroundTaskExecutor;
+
+@RestController
+@RequestMapping("/tasks")
+public class TaskExecutorController {
+    private final BackgroundTaskExecutor backgroundTaskExecutor;
+
+    public TaskExecutorController(BackgroundTaskExecutor backgroundTaskExecutor) {
+        this.backgroundTaskExecutor = backgroundTaskExecutor;
+    }
+
+    @GetMapping("/statistics")
+    public ResponseEntity<TaskExecutorStatistics> getStatistics() {
+        return ResponseEntity.ok(backgroundTaskExecutor.getStatistics());
+    }
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+public record AvatarMetadata(Long id, Long studentId, String mediaType, long fileSize) {
+
+    public String getPreviewUrl() {
+        return "/student/" + studentId + "/avatar/preview";
+    }
+}
@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Страница метаданных аватаров. Следующую страницу запрашивают с {@code afterId = nextAfterId};
+ * {@code nextAfterId == null} означает, что страниц больше нет.
+ */
+public record AvatarMetadataPage(List<AvatarMetadata> avatars, Long nextAfterId) {
+}
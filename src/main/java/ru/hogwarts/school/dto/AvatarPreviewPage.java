@@ -0,0 +1,12 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.service.AvatarPreviewCache;
+
+import java.util.Map;
+
+/**
+ * Страница превью по id студента. Следующую страницу запрашивают с
+ * {@code afterStudentId = nextAfterStudentId}; {@code nextAfterStudentId == null} означает, что страниц больше нет.
+ */
+public record AvatarPreviewPage(Map<Long, AvatarPreviewCache.CachedPreview> previews, Long nextAfterStudentId) {
+}
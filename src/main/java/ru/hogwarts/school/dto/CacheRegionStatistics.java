@@ -0,0 +1,13 @@
+package ru.hogwarts.school.dto;
+
+public record CacheRegionStatistics(String region,
+                                    long hitCount,
+                                    long missCount,
+                                    long putCount,
+                                    long elementCountInMemory) {
+
+    public double getHitRatio() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 0 : (double) hitCount / requests;
+    }
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Частичное изменение факультета: поля со значением null остаются прежними.
+ */
+public record FacultyPatch(String name, String color) {
+
+    public boolean isEmpty() {
+        return name == null && color == null;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.hogwarts.school.dto;
+
+public record FacultySummary(long facultyId,
+                             String name,
+                             String color,
+                             long studentCount,
+                             Integer minAge,
+                             Double avgAge,
+                             Integer maxAge,
+                             long avatarCount) {
+
+    public double getAvatarCoverage() {
+        return studentCount == 0 ? 0 : (double) avatarCount / studentCount;
+    }
+}
@@ -0,0 +1,20 @@
+package ru.hogwarts.school.dto;
+
+public record PatchResult(Status status, String version) {
+
+    public enum Status {
+        APPLIED, NOT_FOUND, CONFLICT
+    }
+
+    public static PatchResult applied(String version) {
+        return new PatchResult(Status.APPLIED, version);
+    }
+
+    public static PatchResult notFound() {
+        return new PatchResult(Status.NOT_FOUND, null);
+    }
+
+    public static PatchResult conflict() {
+        return new PatchResult(Status.CONFLICT, null);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.hogwarts.school.dto;
+
+public record StudentBatchResult(int index, Long id, Status status, String message) {
+
+    public enum Status {
+        CREATED, UPDATED, NOT_FOUND, FAILED
+    }
+
+    public static StudentBatchResult created(int index, long id) {
+        return new StudentBatchResult(index, id, Status.CREATED, null);
+    }
+
+    public static StudentBatchResult updated(int index, long id) {
+        return new StudentBatchResult(index, id, Status.UPDATED, null);
+    }
+
+    public static StudentBatchResult notFound(int index, long id) {
+        return new StudentBatchResult(index, id, Status.NOT_FOUND, null);
+    }
+
+    public static StudentBatchResult failed(int index, Long id, String message) {
+        return new StudentBatchResult(index, id, Status.FAILED, message);
+    }
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Частичное изменение студента: поля со значением null остаются прежними.
+ */
+public record StudentPatch(String name, Integer age, Long facultyId) {
+
+    public boolean isEmpty() {
+        return name == null && age == null && facultyId == null;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.service.SumStrategy;
+
+public record SumResult(SumStrategy strategy, long sum, long elapsedNanos) {
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+}
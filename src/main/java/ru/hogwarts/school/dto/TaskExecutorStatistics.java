@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+public record TaskExecutorStatistics(String mode,
+                                     int poolSize,
+                                     int activeThreads,
+                                     int queueDepth,
+                                     long submittedCount,
+                                     long completedCount,
+                                     long rejectedCount,
+                                     long callerRunsCount) {
+}
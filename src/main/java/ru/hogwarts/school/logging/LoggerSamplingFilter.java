@@ -0,0 +1,55 @@
+package ru.hogwarts.school.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пропускает каждое {@code rate}-е событие уровня INFO и ниже от перечисленных логгеров,
+ * остальные отбрасывает до форматирования. WARN и ERROR проходят всегда.
+ * Счетчик у каждого логгера свой, поэтому редкие логгеры не теряются на фоне частых.
+ * <p>
+ * Сервисы пишут частые операции чтения в отдельный логгер {@code <имя класса>.read}, чтобы
+ * прореживать только их: такие логгеры перечисляются в {@code logging.sampling.loggers}.
+ */
+public class LoggerSamplingFilter extends TurboFilter {
+
+    private Map<String, AtomicLong> counters = Map.of();
+    private int rate = 1;
+
+    public void setLoggers(String loggers) {
+        counters = Arrays.stream(loggers.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .distinct()
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), name -> new AtomicLong()));
+    }
+
+    public void setRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("rate должен быть не меньше 1: " + rate);
+        }
+        this.rate = rate;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // format == null приходит из logger.isEnabledFor ниже: без этой проверки вызов ушел бы в рекурсию
+        if (rate == 1 || format == null || level.isGreaterOrEqual(Level.WARN)) {
+            return FilterReply.NEUTRAL;
+        }
+        AtomicLong counter = counters.get(logger.getName());
+        if (counter == null || !logger.isEnabledFor(level)) {
+            return FilterReply.NEUTRAL;
+        }
+        return counter.getAndIncrement() % rate == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+}
@@ -3,6 +3,7 @@ package ru.hogwarts.school.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -14,6 +15,11 @@ public class Avatar {
     private String filePath;
     private long fileSize;
     private String mediaType;
+    private String contentHash;
+    /** Превью для текущего содержимого построить не удалось, повторять попытку нет смысла. */
+    private boolean previewFailed;
+    /** Время загрузки текущего содержимого, отдается как Last-Modified. */
+    private Instant uploadedAt;
 
     @Lob
     private byte[] data;
@@ -42,13 +48,16 @@ public class Avatar {
                 && Objects.equals(id, avatar.id)
                 && Objects.equals(filePath, avatar.filePath)
                 && Objects.equals(mediaType, avatar.mediaType)
+                && Objects.equals(contentHash, avatar.contentHash)
+                && previewFailed == avatar.previewFailed
+                && Objects.equals(uploadedAt, avatar.uploadedAt)
                 && Arrays.equals(data, avatar.data)
                 && Objects.equals(student, avatar.student);
     }
 
     @Override
     public int hashCode() {
-        int result = Objects.hash(id, filePath, fileSize, mediaType, student);
+        int result = Objects.hash(id, filePath, fileSize, mediaType, contentHash, previewFailed, uploadedAt, student);
         result = 31 * result + Arrays.hashCode(data);
         return result;
     }
@@ -59,6 +68,9 @@ public class Avatar {
                 "id=" + id +
                 ", filePath='" + filePath + '\'' +
                 ", fileSize=" + fileSize +
+                ", contentHash='" + contentHash + '\'' +
+                ", previewFailed=" + previewFailed +
+                ", uploadedAt=" + uploadedAt +
                 ", data=" + Arrays.toString(data) +
                 ", student=" + student +
                 '}';
@@ -111,4 +123,28 @@ public class Avatar {
     public void setMediaType(String mediaType) {
         this.mediaType = mediaType;
     }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public boolean isPreviewFailed() {
+        return previewFailed;
+    }
+
+    public void setPreviewFailed(boolean previewFailed) {
+        this.previewFailed = previewFailed;
+    }
+
+    public Instant getUploadedAt() {
+        return uploadedAt;
+    }
+
+    public void setUploadedAt(Instant uploadedAt) {
+        this.uploadedAt = uploadedAt;
+    }
 }
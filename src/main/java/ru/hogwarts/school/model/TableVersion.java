@@ -0,0 +1,36 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Immutable;
+
+/**
+ * Счетчик изменений таблицы: представление над журналом table_change, куда триггер базы добавляет
+ * строку на каждый изменяющий оператор. Поэтому учитывает и записи в обход приложения,
+ * и записи других экземпляров.
+ */
+@Entity
+@Immutable
+@Table(name = "table_version")
+public class TableVersion {
+    @Id
+    private String tableName;
+    private long version;
+
+    public TableVersion() {
+    }
+
+    public TableVersion(String tableName, long version) {
+        this.tableName = tableName;
+        this.version = version;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
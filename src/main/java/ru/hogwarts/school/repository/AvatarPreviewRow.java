@@ -0,0 +1,4 @@
+package ru.hogwarts.school.repository;
+
+public record AvatarPreviewRow(Long studentId, String mediaType, byte[] data) {
+}
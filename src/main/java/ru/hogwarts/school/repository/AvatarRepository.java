@@ -1,9 +1,60 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.AvatarMetadata;
 import ru.hogwarts.school.model.Avatar;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
+   /** Транзакция нужна для чтения large object, если вызывающий код работает без нее. */
+   @Transactional(readOnly = true)
+   @EntityGraph(attributePaths = "student")
    Optional<Avatar> findAvatarByStudent_Id(Long studentId);
+
+   @Override
+   @EntityGraph(attributePaths = {"student", "student.faculty"})
+   Page<Avatar> findAll(Pageable pageable);
+
+   long countByFilePath(String filePath);
+
+   Optional<Avatar> findFirstByContentHashAndDataIsNotNull(String contentHash);
+
+   /**
+    * Записывает превью, только если аватар все еще хранит то содержимое, из которого оно построено:
+    * медленная задача для старой загрузки не затрет превью новой.
+    */
+   @Modifying
+   @Query("update Avatar a set a.data = :data, a.previewFailed = false where a.id = :id and a.contentHash = :contentHash")
+   int updatePreview(@Param("id") Long id, @Param("contentHash") String contentHash, @Param("data") byte[] data);
+
+   @Modifying
+   @Query("update Avatar a set a.previewFailed = true where a.id = :id and a.contentHash = :contentHash")
+   int markPreviewFailed(@Param("id") Long id, @Param("contentHash") String contentHash);
+
+   @Transactional(readOnly = true)
+   @Query("select new ru.hogwarts.school.repository.AvatarPreviewRow(a.student.id, a.mediaType, a.data) "
+           + "from Avatar a where a.student.id in :studentIds and a.data is not null")
+   List<AvatarPreviewRow> findPreviewsByStudentIds(@Param("studentIds") Collection<Long> studentIds);
+
+   @Transactional(readOnly = true)
+   @Query("select new ru.hogwarts.school.repository.AvatarPreviewRow(a.student.id, a.mediaType, a.data) "
+           + "from Avatar a where a.student.faculty.id = :facultyId and a.student.id > :afterStudentId "
+           + "and a.data is not null order by a.student.id")
+   Slice<AvatarPreviewRow> findPreviewsByFacultyId(@Param("facultyId") long facultyId,
+                                                   @Param("afterStudentId") long afterStudentId,
+                                                   Pageable pageable);
+
+   @Query("select new ru.hogwarts.school.dto.AvatarMetadata(a.id, a.student.id, a.mediaType, a.fileSize) "
+           + "from Avatar a where a.id > :afterId order by a.id")
+   Slice<AvatarMetadata> findMetadataAfter(@Param("afterId") long afterId, Pageable pageable);
 }
@@ -1,18 +1,58 @@
 package ru.hogwarts.school.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import ru.hogwarts.school.dto.FacultySummary;
 import ru.hogwarts.school.model.Faculty;
 import java.util.List;
+import java.util.Optional;
 
-public interface FacultyRepository extends JpaRepository<Faculty, Long> {
+public interface FacultyRepository extends JpaRepository<Faculty, Long>, FacultyRepositoryCustom {
+    String QUERY_CACHE_REGION = "faculty-queries";
+    String SUMMARY_CACHE_REGION = "faculty-summary";
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)})
     List<Faculty> findByColor(String color);
 
+    @Query("select f.version from Faculty f where f.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)})
     Faculty findFirstFacultyByNameIgnoreCase(String name);
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)})
     Faculty findFirstFacultyByColorIgnoreCase(String color);
 
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = QUERY_CACHE_REGION)})
     @Query("select f from Faculty f inner join Student s on f.id = s.faculty.id and s.id = :id")
     Faculty findFacultyByStudentId(@Param("id") Long id);
+
+    @Query(value = "select name from faculty order by length(name) desc nulls last, id limit 1",
+            nativeQuery = true)
+    Optional<String> findMaxLengthName();
+
+    /**
+     * Сводка по всем факультетам одним запросом. Результат лежит в кеше запросов и сбрасывается
+     * Hibernate при любой записи в faculty, student или avatar.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = SUMMARY_CACHE_REGION)})
+    @Query("select new ru.hogwarts.school.dto.FacultySummary(f.id, f.name, f.color, count(s.id), "
+            + "min(s.age), avg(s.age), max(s.age), count(a.id)) "
+            + "from Faculty f left join Student s on s.faculty = f left join Avatar a on a.student = s "
+            + "group by f.id, f.name, f.color order by f.id")
+    List<FacultySummary> findSummaries();
 }
@@ -0,0 +1,12 @@
+package ru.hogwarts.school.repository;
+
+import java.util.Optional;
+
+public interface FacultyRepositoryCustom {
+
+    /**
+     * Частичное изменение одним запросом, аналогично {@link StudentRepositoryCustom#patch}.
+     * Пустой результат означает, что факультета нет.
+     */
+    Optional<FacultyUpdate> patch(long id, String name, String color, Long expectedVersion);
+}
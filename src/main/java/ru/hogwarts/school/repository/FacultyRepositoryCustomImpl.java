@@ -0,0 +1,41 @@
+package ru.hogwarts.school.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.util.List;
+import java.util.Optional;
+
+public class FacultyRepositoryCustomImpl implements FacultyRepositoryCustom {
+
+    private static final String PATCH_SQL = """
+            with old as (select id, version from faculty where id = :id for update),
+            updated as (
+                update faculty f
+                set name = coalesce(:name, f.name),
+                    color = coalesce(:color, f.color),
+                    version = f.version + 1
+                from old
+                where f.id = old.id and (:version is null or old.version = :version)
+                returning f.version)
+            select old.id, updated.version from old left join updated on true""";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<FacultyUpdate> patch(long id, String name, String color, Long expectedVersion) {
+        List<Object[]> rows = entityManager.createNativeQuery(PATCH_SQL)
+                .unwrap(NativeQuery.class)
+                .setParameter("id", id, StandardBasicTypes.LONG)
+                .setParameter("name", name, StandardBasicTypes.STRING)
+                .setParameter("color", color, StandardBasicTypes.STRING)
+                .setParameter("version", expectedVersion, StandardBasicTypes.LONG)
+                .getResultList();
+        return rows.stream().findFirst()
+                .map(row -> new FacultyUpdate(row[1] == null ? null : ((Number) row[1]).longValue()));
+    }
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.repository;
+
+/**
+ * Итог точечного UPDATE факультета. Версия равна null, когда не совпала ожидаемая версия.
+ */
+public record FacultyUpdate(Long version) {
+
+    public boolean isApplied() {
+        return version != null;
+    }
+}
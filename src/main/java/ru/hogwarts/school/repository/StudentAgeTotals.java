@@ -0,0 +1,7 @@
+package ru.hogwarts.school.repository;
+
+public interface StudentAgeTotals {
+    long getCount();
+
+    long getAgeSum();
+}
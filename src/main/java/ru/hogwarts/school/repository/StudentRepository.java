@@ -1,35 +1,69 @@
 package ru.hogwarts.school.repository;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
-public interface StudentRepository extends JpaRepository<Student, Long> {
+public interface StudentRepository extends JpaRepository<Student, Long>, StudentRepositoryCustom {
+    @Override
+    @EntityGraph(attributePaths = "faculty")
+    Optional<Student> findById(Long id);
+
+    @EntityGraph(attributePaths = "faculty")
     List<Student> findByAge(int age);
 
+    @EntityGraph(attributePaths = "faculty")
     Collection<Student> findStudentByAgeBetween(int min, int max);
 
     Student findStudentById(Long id);
 
+    /**
+     * Версия представления студента: в JSON входит факультет, поэтому учитывается и его версия.
+     * Формат совпадает с {@link Student#getRepresentationVersion()}.
+     */
+    @Query("select concat(cast(s.version as String), '.', cast(coalesce(f.version, 0) as String)) "
+            + "from Student s left join s.faculty f where s.id = :id")
+    Optional<String> findRepresentationVersionById(@Param("id") Long id);
+
+    @EntityGraph(attributePaths = "faculty")
     Collection<Student> findStudentsByFaculty_Id(Long id);
 
+    long countByFaculty_Id(Long facultyId);
+
     @Query(value = "select count(*) from student", nativeQuery = true)
     int getAllStudents();
 
     @Query(value = "select round(avg(age)) from student", nativeQuery = true)
     int getAverageAgeOfStudents();
 
-    @Query(value = "select * from student "
-            + "order by id "
-            + "offset (select count(*) from student) - 5",
-            nativeQuery = true)
-    List<Student> getFiveLastStudentById();
+    @EntityGraph(attributePaths = "faculty")
+    List<Student> findTop5ByOrderByIdDesc();
 
     @Query(value = "select * from student order by id limit 6",
     nativeQuery = true)
     List<Student> getSixFirstStudent();
+
+    /**
+     * Сортировка по кодовым точкам, как у String.compareTo, а не по правилам collation базы.
+     */
+    @Query(value = "select upper(name) from student where name like :prefix% order by upper(name) collate \"C\"",
+            nativeQuery = true)
+    List<String> findUpperCaseNamesStartingWith(@Param("prefix") String prefix);
+
+    @Query("select avg(s.age) from Student s")
+    Double findAverageAge();
+
+    @Query("select count(s) as count, coalesce(sum(s.age), 0) as ageSum from Student s")
+    StudentAgeTotals getAgeTotals();
+
+    @Query("select s.faculty.id as facultyId, count(s) as count from Student s "
+            + "where s.faculty is not null group by s.faculty.id")
+    List<FacultyStudentCount> countStudentsByFaculty();
 }
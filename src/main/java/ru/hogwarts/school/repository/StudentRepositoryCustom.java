@@ -0,0 +1,25 @@
+package ru.hogwarts.school.repository;
+
+import ru.hogwarts.school.model.Student;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface StudentRepositoryCustom {
+
+    /**
+     * Открывает курсор по всем студентам (вместе с факультетом) в порядке id.
+     * Студенты отсоединяются от контекста персистентности по мере выдачи,
+     * поэтому потребление памяти не зависит от размера таблицы.
+     * Должен вызываться внутри транзакции, поток необходимо закрыть.
+     */
+    Stream<Student> streamAll();
+
+    /**
+     * Частичное изменение одним запросом: строка блокируется, поля со значением null сохраняют
+     * прежние значения, версия увеличивается. При {@code expectedVersion != null} изменение
+     * применяется только к этой версии. Пустой результат означает, что студента нет.
+     * Запрос идет в обход событий Hibernate, кеши и счетчики обновляет вызывающий код.
+     */
+    Optional<StudentUpdate> patch(long id, String name, Integer age, Long facultyId, Long expectedVersion);
+}
@@ -0,0 +1,68 @@
+package ru.hogwarts.school.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.beans.factory.annotation.Value;
+import ru.hogwarts.school.model.Student;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public class StudentRepositoryCustomImpl implements StudentRepositoryCustom {
+
+    private static final String PATCH_SQL = """
+            with old as (select id, age, faculty_id, version from student where id = :id for update),
+            updated as (
+                update student s
+                set name = coalesce(:name, s.name),
+                    age = coalesce(:age, s.age),
+                    faculty_id = coalesce(:facultyId, s.faculty_id),
+                    version = s.version + 1
+                from old
+                where s.id = old.id and (:version is null or old.version = :version)
+                returning s.age, s.faculty_id, s.version)
+            select old.age, old.faculty_id, updated.age, updated.faculty_id, updated.version,
+                   (select f.version from faculty f where f.id = updated.faculty_id)
+            from old left join updated on true""";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${students.export.fetch-size:500}")
+    private int fetchSize;
+
+    @Override
+    public Stream<Student> streamAll() {
+        return entityManager
+                .createQuery("select s from Student s left join fetch s.faculty order by s.id", Student.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()
+                .peek(entityManager::detach);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Optional<StudentUpdate> patch(long id, String name, Integer age, Long facultyId, Long expectedVersion) {
+        List<Object[]> rows = entityManager.createNativeQuery(PATCH_SQL)
+                .unwrap(NativeQuery.class)
+                .setParameter("id", id, StandardBasicTypes.LONG)
+                .setParameter("name", name, StandardBasicTypes.STRING)
+                .setParameter("age", age, StandardBasicTypes.INTEGER)
+                .setParameter("facultyId", facultyId, StandardBasicTypes.LONG)
+                .setParameter("version", expectedVersion, StandardBasicTypes.LONG)
+                .getResultList();
+        return rows.stream().findFirst().map(row -> new StudentUpdate(
+                ((Number) row[0]).intValue(), toLong(row[1]),
+                row[2] == null ? null : ((Number) row[2]).intValue(), toLong(row[3]),
+                toLong(row[4]), toLong(row[5])));
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+}
@@ -0,0 +1,20 @@
+package ru.hogwarts.school.repository;
+
+/**
+ * Итог точечного UPDATE студента: состояние до изменения и, если строка обновлена, после него.
+ * Версия равна null, когда не совпала ожидаемая версия.
+ */
+public record StudentUpdate(int oldAge, Long oldFacultyId, Integer age, Long facultyId,
+                            Long version, Long facultyVersion) {
+
+    public boolean isApplied() {
+        return version != null;
+    }
+
+    /**
+     * Формат совпадает с {@link ru.hogwarts.school.model.Student#getRepresentationVersion()}.
+     */
+    public String getRepresentationVersion() {
+        return version + "." + (facultyVersion == null ? 0 : facultyVersion);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.hogwarts.school.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.TableVersion;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface TableVersionRepository extends JpaRepository<TableVersion, String> {
+
+    @Transactional(readOnly = true)
+    List<TableVersion> findByTableNameIn(Collection<String> tableNames);
+
+    /**
+     * Сворачивает журнал изменений в одну строку на таблицу, сохраняя сумму. Удаляются только
+     * строки, видимые оператору, поэтому параллельные записи и повторная свертка ничего не теряют.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "with removed as (delete from table_change returning table_name, changes) "
+            + "insert into table_change(table_name, changes) "
+            + "select table_name, sum(changes) from removed group by table_name", nativeQuery = true)
+    int compact();
+}
@@ -0,0 +1,98 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.model.Avatar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Уменьшенные копии аватаров разной ширины. Копия строится при первом запросе в пуле превью
+ * и сохраняется рядом с оригиналом, дальше отдается с диска. Одновременные запросы одной
+ * копии ждут одно построение. Ширины ограничены списком avatars.preview.widths.
+ */
+@Service
+public class AvatarDerivativeService {
+
+    private final Logger logger = LoggerFactory.getLogger(AvatarDerivativeService.class);
+
+    private final AvatarStorage avatarStorage;
+    private final AvatarPreviewService avatarPreviewService;
+    private final TaskExecutor avatarPreviewExecutor;
+    private final Set<Integer> widths;
+    private final Map<Path, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    public AvatarDerivativeService(AvatarStorage avatarStorage,
+                                   AvatarPreviewService avatarPreviewService,
+                                   @Qualifier("avatarPreviewExecutor") TaskExecutor avatarPreviewExecutor,
+                                   @Value("${avatars.preview.widths:48,100,256}") Set<Integer> widths) {
+        this.avatarStorage = avatarStorage;
+        this.avatarPreviewService = avatarPreviewService;
+        this.avatarPreviewExecutor = avatarPreviewExecutor;
+        this.widths = Set.copyOf(widths);
+    }
+
+    public boolean isSupportedWidth(int width) {
+        return widths.contains(width);
+    }
+
+    public CompletableFuture<byte[]> getPreview(Avatar avatar, int width) {
+        Path original = Path.of(avatar.getFilePath());
+        Path target = avatarStorage.derivativePath(original, width);
+        try {
+            return CompletableFuture.completedFuture(Files.readAllBytes(target));
+        } catch (NoSuchFileException e) {
+            logger.debug("Копии {} еще нет, строим", target);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(target, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            avatarPreviewExecutor.execute(() -> {
+                try {
+                    created.complete(build(original, target, width));
+                } catch (Throwable e) {
+                    created.completeExceptionally(e);
+                } finally {
+                    inFlight.remove(target, created);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(target, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    private byte[] build(Path original, Path target, int width) {
+        try {
+            if (Files.exists(target)) {
+                return Files.readAllBytes(target);
+            }
+            byte[] preview = avatarPreviewService.renderPreview(original, width);
+            avatarStorage.storeDerivative(original, target, preview);
+            logger.info("Построена копия аватара шириной {}: {}", width, target);
+            return preview;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
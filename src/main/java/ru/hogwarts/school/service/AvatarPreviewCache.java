@@ -0,0 +1,351 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кеш превью аватаров по id студента вне кучи. Байты лежат в прямых {@link ByteBuffer}-слабах,
+ * нарезанных на блоки фиксированного размера; в куче остаются только номера блоков записи.
+ * Слабы выделяются по мере заполнения, общий объем ограничен avatars.preview-cache.max-size.
+ * При нехватке блоков записи вытесняются по алгоритму CLOCK: чтение только ставит записи флаг,
+ * а стрелка обходит записи в порядке добавления и вытесняет первую без флага, снимая флаги по пути.
+ * <p>
+ * Чтение не берет блокировок и не копирует байты: {@link #get} отдает срезы слабов только для чтения
+ * и увеличивает счетчик ссылок записи. Блоки вытесненной или инвалидированной записи возвращаются
+ * в свободные, когда закрыт последний выданный {@link CachedPreview}. Под общей блокировкой
+ * выполняются только запись, вытеснение и освобождение блоков.
+ * <p>
+ * Загрузка из базы может разминуться с инвалидацией: чтение началось до коммита новой загрузки,
+ * а закончилось после. Поэтому перед чтением берется {@link #stamp()}, и {@link #put} ничего
+ * не сохраняет, если тот же студент был инвалидирован после этой метки. Метки инвалидаций хранятся
+ * по студентам; когда их набирается больше {@value #MAX_TOMBSTONES}, они заменяются одной нижней
+ * границей, и до нее отбрасываются загрузки всех студентов.
+ */
+@Component
+public class AvatarPreviewCache {
+
+    /**
+     * Превью для ответа. Байты из кеша остаются в слабах, пока превью не закрыто,
+     * поэтому после записи в ответ его нужно закрыть.
+     */
+    public static final class CachedPreview implements AutoCloseable {
+        private final String mediaType;
+        private final int length;
+        private final ByteBuffer[] chunks;
+        private final Runnable onClose;
+        private final AtomicInteger closed = new AtomicInteger();
+
+        private CachedPreview(String mediaType, int length, ByteBuffer[] chunks, Runnable onClose) {
+            this.mediaType = mediaType;
+            this.length = length;
+            this.chunks = chunks;
+            this.onClose = onClose;
+        }
+
+        /**
+         * Превью из кучи, например только что загруженное из базы.
+         */
+        public static CachedPreview of(String mediaType, byte[] data) {
+            return new CachedPreview(mediaType, data.length, new ByteBuffer[]{ByteBuffer.wrap(data).asReadOnlyBuffer()},
+                    null);
+        }
+
+        public String mediaType() {
+            return mediaType;
+        }
+
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Пишет байты превью в поток через канал, без промежуточного массива размером с превью.
+         */
+        public void writeTo(OutputStream os) throws IOException {
+            WritableByteChannel channel = Channels.newChannel(os);
+            for (ByteBuffer chunk : chunks) {
+                ByteBuffer view = chunk.duplicate();
+                while (view.hasRemaining()) {
+                    channel.write(view);
+                }
+            }
+        }
+
+        public byte[] toByteArray() {
+            byte[] data = new byte[length];
+            int position = 0;
+            for (ByteBuffer chunk : chunks) {
+                int chunkLength = chunk.remaining();
+                chunk.get(chunk.position(), data, position, chunkLength);
+                position += chunkLength;
+            }
+            return data;
+        }
+
+        @Override
+        public void close() {
+            if (onClose != null && closed.compareAndSet(0, 1)) {
+                onClose.run();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final long studentId;
+        private final String mediaType;
+        private final int length;
+        private final int[] blocks;
+        /** Одна ссылка принадлежит кешу, остальные - выданным превью. */
+        private final AtomicInteger refs = new AtomicInteger(1);
+        private volatile boolean referenced;
+
+        private Entry(long studentId, String mediaType, int length, int[] blocks) {
+            this.studentId = studentId;
+            this.mediaType = mediaType;
+            this.length = length;
+            this.blocks = blocks;
+        }
+
+        private boolean retain() {
+            int current;
+            do {
+                current = refs.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!refs.compareAndSet(current, current + 1));
+            return true;
+        }
+    }
+
+    private static final int MAX_TOMBSTONES = 10_000;
+
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final int totalBlocks;
+    private final ByteBuffer[] slabs;
+    private final int[] freeBlocks;
+    private int freeCount;
+    private int allocatedBlocks;
+    private volatile long residentBytes;
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    /** Очередь стрелки CLOCK; удаленные записи пропускаются при обходе и периодически вычищаются. */
+    private final ArrayDeque<Entry> clock = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong stamp = new AtomicLong();
+    private final ConcurrentHashMap<Long, Long> invalidatedAt = new ConcurrentHashMap<>();
+    private volatile long stampFloor;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public AvatarPreviewCache(@Value("${avatars.preview-cache.max-size:16MB}") DataSize maxSize,
+                              @Value("${avatars.preview-cache.slab-size:1MB}") DataSize slabSize,
+                              @Value("${avatars.preview-cache.block-size:4KB}") DataSize blockSize,
+                              MeterRegistry meterRegistry) {
+        this.blockSize = (int) blockSize.toBytes();
+        this.blocksPerSlab = Math.max(1, (int) (slabSize.toBytes() / this.blockSize));
+        int slabCount = (int) (maxSize.toBytes() / ((long) blocksPerSlab * this.blockSize));
+        this.slabs = new ByteBuffer[slabCount];
+        this.totalBlocks = slabCount * blocksPerSlab;
+        this.freeBlocks = new int[totalBlocks];
+
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get)
+                .tag("cache", "avatar-previews").tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+                .tag("cache", "avatar-previews").tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, AtomicLong::get)
+                .tag("cache", "avatar-previews")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, AvatarPreviewCache::size)
+                .tag("cache", "avatar-previews")
+                .register(meterRegistry);
+        Gauge.builder("avatar.preview.cache.resident", this, AvatarPreviewCache::residentBytes)
+                .description("Байты превью, занятые в кеше вне кучи")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("avatar.preview.cache.capacity", this, cache -> (double) cache.totalBlocks * cache.blockSize)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Метка для последующего {@link #put}; берется до чтения из базы.
+     */
+    public long stamp() {
+        return stamp.get();
+    }
+
+    /**
+     * Превью из кеша или null. Возвращенное превью нужно закрыть после записи в ответ.
+     */
+    public CachedPreview get(long studentId) {
+        Entry entry = entries.get(studentId);
+        if (entry == null || !entry.retain()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        ByteBuffer[] chunks = new ByteBuffer[entry.blocks.length];
+        int position = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            int block = entry.blocks[i];
+            int length = Math.min(blockSize, entry.length - position);
+            chunks[i] = slabs[block / blocksPerSlab].slice(offsetOf(block), length).asReadOnlyBuffer();
+            position += length;
+        }
+        return new CachedPreview(entry.mediaType, entry.length, chunks, () -> release(entry));
+    }
+
+    /**
+     * Сохраняет превью, если с момента {@code stamp} этот студент не инвалидировался
+     * и превью помещается в кеш.
+     */
+    public void put(long studentId, long stamp, String mediaType, byte[] data) {
+        int needed = (data.length + blockSize - 1) / blockSize;
+        if (needed == 0 || needed > totalBlocks) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (stamp < stampFloor || invalidatedAt.getOrDefault(studentId, Long.MIN_VALUE) > stamp) {
+                return;
+            }
+            remove(studentId);
+            if (available() < needed) {
+                evict(needed);
+            }
+            if (available() < needed) {
+                return;
+            }
+            int[] blocks = new int[needed];
+            int position = 0;
+            for (int i = 0; i < needed; i++) {
+                blocks[i] = allocate();
+                int length = Math.min(blockSize, data.length - position);
+                slabFor(blocks[i]).put(offsetOf(blocks[i]), data, position, length);
+                position += length;
+            }
+            residentBytes += data.length;
+            Entry entry = new Entry(studentId, mediaType, data.length, blocks);
+            entries.put(studentId, entry);
+            clock.addLast(entry);
+            if (clock.size() > 2 * entries.size() + 16) {
+                clock.removeIf(queued -> entries.get(queued.studentId) != queued);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(long studentId) {
+        invalidatedAt.merge(studentId, stamp.incrementAndGet(), Math::max);
+        lock.lock();
+        try {
+            remove(studentId);
+            if (invalidatedAt.size() > MAX_TOMBSTONES) {
+                // Сначала очистка, потом граница: все удаленные метки не больше нее
+                invalidatedAt.clear();
+                stampFloor = stamp.get();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long residentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Двигает стрелку CLOCK, пока не освободится {@code needed} блоков: запись с флагом чтения
+     * получает второй шанс, без флага вытесняется. Каждая запись теряет флаг не больше одного раза,
+     * поэтому хватает двух оборотов. Блоки записей, которые сейчас отдаются, освободятся позже,
+     * при закрытии превью.
+     */
+    private void evict(int needed) {
+        Entry entry;
+        while (available() < needed && (entry = clock.pollFirst()) != null) {
+            if (entries.get(entry.studentId) != entry) {
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.addLast(entry);
+            } else if (entries.remove(entry.studentId, entry)) {
+                evictions.incrementAndGet();
+                release(entry);
+            }
+        }
+    }
+
+    private void remove(long studentId) {
+        Entry entry = entries.remove(studentId);
+        if (entry != null) {
+            release(entry);
+        }
+    }
+
+    private void release(Entry entry) {
+        if (entry.refs.decrementAndGet() > 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (int block : entry.blocks) {
+                freeBlocks[freeCount++] = block;
+            }
+            residentBytes -= entry.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int available() {
+        return freeCount + totalBlocks - allocatedBlocks;
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeBlocks[--freeCount];
+        }
+        return allocatedBlocks++;
+    }
+
+    private ByteBuffer slabFor(int block) {
+        int index = block / blocksPerSlab;
+        if (slabs[index] == null) {
+            slabs[index] = ByteBuffer.allocateDirect(blocksPerSlab * blockSize);
+        }
+        return slabs[index];
+    }
+
+    private int offsetOf(int block) {
+        return (block % blocksPerSlab) * blockSize;
+    }
+}
@@ -0,0 +1,12 @@
+package ru.hogwarts.school.service;
+
+/**
+ * Превью аватара построить не удалось: загруженный файл не разбирается как изображение.
+ * Состояние окончательное до следующей загрузки, повторять запрос бесполезно.
+ */
+public class AvatarPreviewFailedException extends RuntimeException {
+
+    public AvatarPreviewFailedException(long studentId) {
+        super("Не удалось построить превью аватара студента " + studentId);
+    }
+}
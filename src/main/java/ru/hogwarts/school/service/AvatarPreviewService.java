@@ -0,0 +1,203 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.IntSupplier;
+
+@Service
+public class AvatarPreviewService {
+
+    /** Ширина превью, которое строится при загрузке и хранится в {@code avatar.data}. */
+    public static final int DEFAULT_WIDTH = 100;
+
+    private final Logger logger = LoggerFactory.getLogger(AvatarPreviewService.class);
+
+    private final AvatarRepository avatarRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor avatarPreviewExecutor;
+    private final MeterRegistry meterRegistry;
+
+    public AvatarPreviewService(AvatarRepository avatarRepository,
+                                TransactionTemplate transactionTemplate,
+                                @Qualifier("avatarPreviewExecutor") TaskExecutor avatarPreviewExecutor,
+                                MeterRegistry meterRegistry) {
+        this.avatarRepository = avatarRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.avatarPreviewExecutor = avatarPreviewExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Ставит построение превью в очередь. Внутри транзакции задача отправляется только
+     * после коммита, чтобы обработчик увидел сохраненный аватар. Превью строится из уже
+     * прочитанных байтов загрузки, файл повторно не читается. Результат сохраняется, только если
+     * у аватара все еще хеш {@code contentHash}; если изображение не удалось разобрать, аватар
+     * помечается как {@link ru.hogwarts.school.model.Avatar#isPreviewFailed()}.
+     */
+    public void schedulePreview(Long avatarId, String contentHash, byte[] content, String format) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(avatarId, contentHash, content, format);
+                }
+            });
+        } else {
+            submit(avatarId, contentHash, content, format);
+        }
+    }
+
+    public static byte[] generateImagePreview(Path filePath) throws IOException {
+        return generateImagePreview(filePath, DEFAULT_WIDTH);
+    }
+
+    /**
+     * Уменьшает изображение до ширины {@code width} с сохранением пропорций.
+     * Изображения уже этой ширины не растягиваются, а только перекодируются.
+     */
+    public static byte[] generateImagePreview(Path filePath, int width) throws IOException {
+        BufferedImage image;
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(filePath), 8192)) {
+            image = ImageIO.read(is);
+        }
+        if (image == null) {
+            throw new IOException("Неподдерживаемый формат изображения: " + filePath);
+        }
+        return encodePreview(image, getExtension(filePath.getFileName().toString()), width);
+    }
+
+    /**
+     * То же для изображения в памяти; {@code format} — расширение файла, в нем же кодируется превью.
+     */
+    public static byte[] generateImagePreview(byte[] content, String format, int width) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(content));
+        if (image == null) {
+            throw new IOException("Неподдерживаемый формат изображения: " + format);
+        }
+        return encodePreview(image, format, width);
+    }
+
+    private static byte[] encodePreview(BufferedImage image, String format, int width) throws IOException {
+        boolean keepAlpha = image.getColorModel().hasAlpha() && !isJpeg(format);
+        BufferedImage preview = scaleToWidth(image, width, keepAlpha);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (!ImageIO.write(preview, format, baos)) {
+            throw new IOException("Нет кодировщика для формата " + format);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Многошаговое уменьшение: размер делится пополам билинейной интерполяцией, пока не
+     * станет не больше чем вдвое крупнее целевого, затем последний шаг до точного размера.
+     * Одношаговое уменьшение в разы пропускает большую часть пикселей и дает ступеньки.
+     */
+    static BufferedImage scaleToWidth(BufferedImage source, int width, boolean keepAlpha) {
+        int targetWidth = Math.min(width, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        int type = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = currentWidth == targetWidth ? targetHeight : Math.max(targetHeight, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            if (!keepAlpha && current.getColorModel().hasAlpha()) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, currentWidth, currentHeight);
+            }
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            graphics.dispose();
+            current = next;
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+        return current;
+    }
+
+    /**
+     * Строит превью заданной ширины и учитывает время в метрике avatar.preview.generation.
+     */
+    public byte[] renderPreview(Path filePath, int width) throws IOException {
+        return timed(width, () -> generateImagePreview(filePath, width));
+    }
+
+    public byte[] renderPreview(byte[] content, String format, int width) throws IOException {
+        return timed(width, () -> generateImagePreview(content, format, width));
+    }
+
+    private byte[] timed(int width, PreviewRenderer renderer) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            byte[] preview = renderer.render();
+            outcome = "success";
+            return preview;
+        } finally {
+            sample.stop(Timer.builder("avatar.preview.generation")
+                    .description("Построение превью аватара")
+                    .tag("width", String.valueOf(width))
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private void submit(Long avatarId, String contentHash, byte[] content, String format) {
+        avatarPreviewExecutor.execute(() -> buildPreview(avatarId, contentHash, content, format));
+    }
+
+    private void buildPreview(Long avatarId, String contentHash, byte[] content, String format) {
+        logger.info("Построение превью аватара {}", avatarId);
+        byte[] preview;
+        try {
+            preview = renderPreview(content, format, DEFAULT_WIDTH);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Не удалось построить превью аватара {}", avatarId, e);
+            save(avatarId, () -> avatarRepository.markPreviewFailed(avatarId, contentHash));
+            return;
+        }
+        save(avatarId, () -> avatarRepository.updatePreview(avatarId, contentHash, preview));
+    }
+
+    private void save(Long avatarId, IntSupplier update) {
+        try {
+            Integer updated = transactionTemplate.execute(status -> update.getAsInt());
+            if (updated == null || updated == 0) {
+                logger.info("Аватар {} заменен или удален, результат построения превью отброшен", avatarId);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Не удалось сохранить результат построения превью аватара {}", avatarId, e);
+        }
+    }
+
+    private static String getExtension(String fileName) {
+        return fileName.substring(fileName.lastIndexOf(".") + 1);
+    }
+
+    private static boolean isJpeg(String format) {
+        return format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg");
+    }
+
+    @FunctionalInterface
+    private interface PreviewRenderer {
+        byte[] render() throws IOException;
+    }
+}
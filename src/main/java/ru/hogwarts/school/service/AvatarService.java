@@ -3,25 +3,102 @@ package ru.hogwarts.school.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.dto.AvatarMetadataPage;
+import ru.hogwarts.school.dto.AvatarPreviewPage;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.repository.AvatarPreviewRow;
 import ru.hogwarts.school.repository.AvatarRepository;
 
 import javax.print.attribute.standard.PageRanges;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
 public class AvatarService {
     private final AvatarRepository avatarRepository;
+    private final AvatarPreviewCache avatarPreviewCache;
     private final Logger logger = LoggerFactory.getLogger(AvatarService.class);
-    public AvatarService(AvatarRepository avatarRepository) {
+    private final Logger readLogger = LoggerFactory.getLogger(AvatarService.class.getName() + ".read");
+    public AvatarService(AvatarRepository avatarRepository, AvatarPreviewCache avatarPreviewCache) {
         this.avatarRepository = avatarRepository;
+        this.avatarPreviewCache = avatarPreviewCache;
     }
 
     public List<Avatar> getPageOfAvatars(int pageNumber, int pageSize) {
-        logger.info("Получение аватаров со страницы {} размером {}", pageNumber, pageSize);
+        readLogger.info("Получение аватаров со страницы {} размером {}", pageNumber, pageSize);
         PageRequest pageRequest = PageRequest.of(pageNumber - 1, pageSize);
         return avatarRepository.findAll(pageRequest).getContent();
     }
+
+    public AvatarMetadataPage getAvatarMetadata(long afterId, int pageSize) {
+        readLogger.info("Получение метаданных аватаров после id {} размером {}", afterId, pageSize);
+        Slice<AvatarMetadata> slice = avatarRepository.findMetadataAfter(afterId, PageRequest.ofSize(pageSize));
+        List<AvatarMetadata> avatars = slice.getContent();
+        Long nextAfterId = slice.hasNext() ? avatars.get(avatars.size() - 1).id() : null;
+        return new AvatarMetadataPage(avatars, nextAfterId);
+    }
+
+    /**
+     * Превью нескольких студентов в порядке запроса: найденные в кеше берутся оттуда,
+     * остальные загружаются одним запросом с IN и кладутся в кеш.
+     * Студенты без аватара или с еще не построенным превью пропускаются.
+     * Превью закрываются после записи в ответ; при ошибке уже взятые из кеша закрываются здесь.
+     */
+    public Map<Long, AvatarPreviewCache.CachedPreview> findPreviews(Collection<Long> studentIds) {
+        readLogger.info("Получение превью аватаров {} студентов", studentIds.size());
+        Map<Long, AvatarPreviewCache.CachedPreview> previews = new LinkedHashMap<>();
+        try {
+            List<Long> missing = new ArrayList<>();
+            for (Long studentId : studentIds) {
+                AvatarPreviewCache.CachedPreview cached = avatarPreviewCache.get(studentId);
+                previews.put(studentId, cached);
+                if (cached == null) {
+                    missing.add(studentId);
+                }
+            }
+            if (!missing.isEmpty()) {
+                long stamp = avatarPreviewCache.stamp();
+                for (AvatarPreviewRow row : avatarRepository.findPreviewsByStudentIds(missing)) {
+                    previews.put(row.studentId(), cache(row, stamp));
+                }
+            }
+        } catch (RuntimeException e) {
+            previews.values().stream().filter(Objects::nonNull).forEach(AvatarPreviewCache.CachedPreview::close);
+            throw e;
+        }
+        previews.values().removeIf(Objects::isNull);
+        return previews;
+    }
+
+    /**
+     * Страница превью студентов факультета после {@code afterStudentId} одним запросом,
+     * загруженные превью попадают в кеш.
+     */
+    public AvatarPreviewPage findFacultyPreviews(long facultyId, long afterStudentId, int pageSize) {
+        readLogger.info("Получение превью аватаров студентов факультета {} после id {} размером {}",
+                facultyId, afterStudentId, pageSize);
+        long stamp = avatarPreviewCache.stamp();
+        Slice<AvatarPreviewRow> slice = avatarRepository.findPreviewsByFacultyId(facultyId, afterStudentId,
+                PageRequest.ofSize(pageSize));
+        Map<Long, AvatarPreviewCache.CachedPreview> previews = new LinkedHashMap<>();
+        for (AvatarPreviewRow row : slice) {
+            previews.put(row.studentId(), cache(row, stamp));
+        }
+        List<AvatarPreviewRow> rows = slice.getContent();
+        Long nextAfterStudentId = slice.hasNext() ? rows.get(rows.size() - 1).studentId() : null;
+        return new AvatarPreviewPage(previews, nextAfterStudentId);
+    }
+
+    private AvatarPreviewCache.CachedPreview cache(AvatarPreviewRow row, long stamp) {
+        avatarPreviewCache.put(row.studentId(), stamp, row.mediaType(), row.data());
+        return AvatarPreviewCache.CachedPreview.of(row.mediaType(), row.data());
+    }
 }
@@ -0,0 +1,195 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище файлов аватаров с адресацией по содержимому: файл называется SHA-256 хешем
+ * и раскладывается по каталогам {@code ab/cd/abcd...}, одинаковые загрузки хранятся один раз.
+ * Число ссылок на файл — количество аватаров с этим путем; файл удаляется после коммита,
+ * когда ссылок не осталось. Незакоммиченные загрузки учитываются в памяти, поэтому
+ * хранилище рассчитано на один экземпляр приложения.
+ */
+@Component
+public class AvatarStorage {
+
+    private static final String TEMP_DIR = ".tmp";
+    private static final int LOCK_STRIPES = 64;
+
+    private final Logger logger = LoggerFactory.getLogger(AvatarStorage.class);
+
+    private final Path root;
+    private final AvatarRepository avatarRepository;
+    private final TransactionTemplate requiresNewTransaction;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Map<String, Integer> pendingReferences = new ConcurrentHashMap<>();
+
+    public AvatarStorage(@Value("${avatars.dir.path}") String avatarsDir,
+                         AvatarRepository avatarRepository,
+                         PlatformTransactionManager transactionManager) {
+        this.root = Path.of(avatarsDir);
+        this.avatarRepository = avatarRepository;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.requiresNewTransaction.setReadOnly(true);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Сохраняет уже прочитанное содержимое загрузки. Хеш считается по байтам в памяти,
+     * поэтому повторная загрузка того же файла вообще не пишет на диск.
+     */
+    public StoredAvatar store(byte[] content, String extension) throws IOException {
+        String hash = HexFormat.of().formatHex(sha256().digest(content));
+        Path target = resolve(hash, extension);
+        synchronized (lockFor(target.toString())) {
+            if (Files.exists(target)) {
+                logger.debug("Файл аватара {} уже есть в хранилище", hash);
+            } else {
+                Path tempDir = Files.createDirectories(root.resolve(TEMP_DIR));
+                Path tempFile = Files.createTempFile(tempDir, "upload-", ".tmp");
+                try {
+                    Files.write(tempFile, content);
+                    Files.createDirectories(target.getParent());
+                    Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+            }
+            holdUntilCompletion(target.toString());
+        }
+        return new StoredAvatar(hash, target, content.length);
+    }
+
+    /**
+     * Удаляет файл после коммита текущей транзакции, если на него больше не ссылается ни один аватар.
+     */
+    public void release(Path filePath) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteIfUnreferenced(filePath.toString());
+                }
+            });
+        } else {
+            deleteIfUnreferenced(filePath.toString());
+        }
+    }
+
+    /**
+     * Путь уменьшенной копии заданной ширины: рядом с оригиналом, {@code <hash>.w<width>.<ext>}.
+     */
+    public Path derivativePath(Path original, int width) {
+        String name = original.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot < 0 ? name : name.substring(0, dot);
+        String extension = dot < 0 ? "" : name.substring(dot);
+        return original.resolveSibling(base + ".w" + width + extension);
+    }
+
+    /**
+     * Атомарно записывает уменьшенную копию. Если оригинал уже удален, копия не сохраняется,
+     * иначе она осталась бы в хранилище без владельца.
+     */
+    public void storeDerivative(Path original, Path target, byte[] data) throws IOException {
+        Path tempDir = Files.createDirectories(root.resolve(TEMP_DIR));
+        Path tempFile = Files.createTempFile(tempDir, "derivative-", ".tmp");
+        try {
+            Files.write(tempFile, data);
+            synchronized (lockFor(original.toString())) {
+                if (Files.exists(original)) {
+                    Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void holdUntilCompletion(String filePath) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        pendingReferences.merge(filePath, 1, Integer::sum);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                pendingReferences.computeIfPresent(filePath, (key, count) -> count == 1 ? null : count - 1);
+            }
+        });
+    }
+
+    private void deleteIfUnreferenced(String filePath) {
+        synchronized (lockFor(filePath)) {
+            if (pendingReferences.containsKey(filePath)) {
+                return;
+            }
+            Long references = requiresNewTransaction.execute(status ->
+                    avatarRepository.countByFilePath(filePath));
+            if (references != null && references == 0) {
+                try {
+                    Files.deleteIfExists(Path.of(filePath));
+                    deleteDerivatives(Path.of(filePath));
+                    logger.info("Удален файл аватара {}, на который больше нет ссылок", filePath);
+                } catch (IOException e) {
+                    logger.warn("Не удалось удалить файл аватара {}", filePath, e);
+                }
+            }
+        }
+    }
+
+    private void deleteDerivatives(Path original) throws IOException {
+        Path directory = original.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return;
+        }
+        String name = original.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String pattern = (dot < 0 ? name : name.substring(0, dot)) + ".w*";
+        try (DirectoryStream<Path> derivatives = Files.newDirectoryStream(directory, pattern)) {
+            for (Path derivative : derivatives) {
+                Files.deleteIfExists(derivative);
+            }
+        }
+    }
+
+    private Path resolve(String hash, String extension) {
+        return root.resolve(hash.substring(0, 2))
+                .resolve(hash.substring(2, 4))
+                .resolve(hash + "." + extension);
+    }
+
+    private Object lockFor(String filePath) {
+        return locks[Math.floorMod(filePath.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.dto.TaskExecutorStatistics;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Исполнитель фоновых задач сервисов. По умолчанию ограниченный пул платформенных потоков
+ * с очередью; в режиме virtual каждая задача получает виртуальный поток, если их поддерживает JVM.
+ * Метрики пула публикуются в Micrometer под именем {@value #METRICS_NAME}.
+ */
+@Component
+public class BackgroundTaskExecutor {
+
+    public static final String MODE_PLATFORM = "platform";
+    public static final String MODE_VIRTUAL = "virtual";
+    public static final String METRICS_NAME = "student-tasks";
+
+    private final Logger logger = LoggerFactory.getLogger(BackgroundTaskExecutor.class);
+
+    private final ExecutorService executor;
+    private final String mode;
+    private final int poolSize;
+    private final long awaitTerminationSeconds;
+    private final AtomicInteger activeThreads = new AtomicInteger();
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong callerRunsCount = new AtomicLong();
+
+    public BackgroundTaskExecutor(@Value("${students.tasks.mode:platform}") String mode,
+                                  @Value("${students.tasks.pool-size:4}") int poolSize,
+                                  @Value("${students.tasks.queue-capacity:100}") int queueCapacity,
+                                  @Value("${students.tasks.rejection-policy:caller-runs}") String rejectionPolicy,
+                                  @Value("${students.tasks.await-termination:PT30S}") Duration awaitTermination,
+                                  MeterRegistry meterRegistry) {
+        ExecutorService virtual = MODE_VIRTUAL.equalsIgnoreCase(mode) ? createVirtualExecutor() : null;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.mode = MODE_VIRTUAL;
+        } else {
+            this.executor = createPlatformExecutor(poolSize, queueCapacity, rejectionPolicy);
+            this.mode = MODE_PLATFORM;
+        }
+        this.poolSize = poolSize;
+        this.awaitTerminationSeconds = awaitTermination.toSeconds();
+        bindMetrics(meterRegistry);
+        logger.info("Исполнитель фоновых задач запущен в режиме {}", this.mode);
+    }
+
+    /**
+     * Ставит задачу в очередь. Если очередь переполнена и выбрана политика abort,
+     * возвращает future, завершенный {@link RejectedExecutionException}.
+     */
+    public CompletableFuture<Void> submit(Runnable task) {
+        submittedCount.incrementAndGet();
+        try {
+            return CompletableFuture.runAsync(() -> {
+                activeThreads.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    activeThreads.decrementAndGet();
+                    completedCount.incrementAndGet();
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            logger.warn("Фоновая задача отклонена: {}", e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public TaskExecutorStatistics getStatistics() {
+        int queueDepth = executor instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+        return new TaskExecutorStatistics(mode, MODE_VIRTUAL.equals(mode) ? 0 : poolSize, activeThreads.get(),
+                queueDepth, submittedCount.get(), completedCount.get(), rejectedCount.get(), callerRunsCount.get());
+    }
+
+    /**
+     * Размер пула, активные потоки, очередь и завершенные задачи дает {@link ExecutorServiceMetrics}
+     * (для виртуальных потоков он метрик не публикует). Отказы и выполнение в вызывающем потоке
+     * считаются отдельно: второе не теряет задачу, а только замедляет вызывающий код.
+     */
+    private void bindMetrics(MeterRegistry meterRegistry) {
+        Tags tags = Tags.of("name", METRICS_NAME);
+        new ExecutorServiceMetrics(executor, METRICS_NAME, Tags.empty()).bindTo(meterRegistry);
+        FunctionCounter.builder("executor.rejected", rejectedCount, AtomicLong::get)
+                .tags(tags)
+                .description("Фоновые задачи, отклоненные исполнителем")
+                .register(meterRegistry);
+        FunctionCounter.builder("executor.caller.runs", callerRunsCount, AtomicLong::get)
+                .tags(tags)
+                .description("Фоновые задачи, выполненные в вызывающем потоке из-за переполненной очереди")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(awaitTerminationSeconds, TimeUnit.SECONDS)) {
+            logger.warn("Фоновые задачи не завершились за {} с, прерываем", awaitTerminationSeconds);
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService createPlatformExecutor(int poolSize, int queueCapacity, String rejectionPolicy) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> new Thread(runnable, "student-task-" + threadNumber.incrementAndGet());
+        return new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, rejectionHandler(rejectionPolicy));
+    }
+
+    private RejectedExecutionHandler rejectionHandler(String rejectionPolicy) {
+        return switch (rejectionPolicy.toLowerCase()) {
+            case "abort" -> new ThreadPoolExecutor.AbortPolicy();
+            case "caller-runs" -> (runnable, pool) -> {
+                if (pool.isShutdown()) {
+                    throw new RejectedExecutionException("Исполнитель фоновых задач остановлен");
+                }
+                callerRunsCount.incrementAndGet();
+                runnable.run();
+            };
+            default -> throw new IllegalArgumentException("Неизвестная политика отказа: " + rejectionPolicy);
+        };
+    }
+
+    private ExecutorService createVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            logger.warn("Виртуальные потоки недоступны в этой JVM, используется пул платформенных потоков");
+            return null;
+        }
+    }
+}
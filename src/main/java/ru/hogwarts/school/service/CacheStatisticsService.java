@@ -0,0 +1,36 @@
+package ru.hogwarts.school.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.CacheRegionStatistics;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Service
+public class CacheStatisticsService {
+
+    private final Statistics statistics;
+
+    public CacheStatisticsService(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public List<CacheRegionStatistics> getRegionStatistics() {
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(this::toRegionStatistics)
+                .toList();
+    }
+
+    private CacheRegionStatistics toRegionStatistics(String region) {
+        org.hibernate.stat.CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+        return new CacheRegionStatistics(region,
+                regionStatistics.getHitCount(),
+                regionStatistics.getMissCount(),
+                regionStatistics.getPutCount(),
+                regionStatistics.getElementCountInMemory());
+    }
+}
@@ -0,0 +1,87 @@
+package ru.hogwarts.school.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.TableVersion;
+import ru.hogwarts.school.repository.TableVersionRepository;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Метки изменений таблиц для ETag коллекций. Триггер базы на каждый изменяющий оператор добавляет
+ * строку в журнал table_change, метка таблицы - число изменений в нем. Поэтому метка одинакова на всех
+ * экземплярах приложения и меняется и от записей в обход сервиса: прямого SQL, импорта, другого узла.
+ * Журнал только дополняется, так что пишущие транзакции не ждут друг друга на общей строке счетчика,
+ * а метка учитывает транзакции в порядке коммита, а не в порядке начала. Журнал периодически
+ * сворачивается, метка при этом не меняется.
+ */
+@Component
+public class EntityChangeStamps {
+
+    private static final Map<Class<?>, String> TABLES = Map.of(
+            Student.class, "student",
+            Faculty.class, "faculty",
+            Avatar.class, "avatar");
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final TableVersionRepository tableVersionRepository;
+
+    public EntityChangeStamps(EntityManagerFactory entityManagerFactory,
+                              TableVersionRepository tableVersionRepository) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.tableVersionRepository = tableVersionRepository;
+    }
+
+    /**
+     * Отмечает строку, измененную запросом в обход Hibernate: после коммита убирает ее из кеша
+     * второго уровня и сбрасывает кеши запросов (в них могут быть старые значения).
+     * Вне транзакции все выполняется сразу. Метку таблицы при этом обновляет триггер.
+     */
+    public void bulkUpdated(Class<?> entityClass, Object id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(entityClass, id);
+                }
+            });
+        } else {
+            invalidate(entityClass, id);
+        }
+    }
+
+    private void invalidate(Class<?> entityClass, Object id) {
+        Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        cache.evictEntityData(entityClass, id);
+        cache.evictQueryRegions();
+    }
+
+    @Scheduled(fixedDelayString = "${table-versions.compact-interval:PT1M}")
+    public void compact() {
+        tableVersionRepository.compact();
+    }
+
+    /**
+     * Метка состояния набора таблиц. Читать ее нужно до запроса данных: если коммит произойдет
+     * между чтением метки и запросом, клиент просто получит полный ответ еще раз.
+     */
+    public String getStamp(Class<?>... entityClasses) {
+        Map<String, Long> versions = tableVersionRepository
+                .findByTableNameIn(Arrays.stream(entityClasses).map(TABLES::get).toList())
+                .stream()
+                .collect(Collectors.toMap(TableVersion::getTableName, TableVersion::getVersion));
+        return Arrays.stream(entityClasses)
+                .map(entityClass -> String.valueOf(versions.get(TABLES.get(entityClass))))
+                .collect(Collectors.joining("-"));
+    }
+}
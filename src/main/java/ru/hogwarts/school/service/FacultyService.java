@@ -3,17 +3,28 @@ package ru.hogwarts.school.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.dto.PatchResult;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.FacultyUpdate;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Service
+@Transactional
 public class FacultyService {
 
     private final FacultyRepository facultyRepository;
+    private final EntityChangeStamps entityChangeStamps;
     private final Logger logger = LoggerFactory.getLogger(FacultyService.class);
-    public FacultyService(FacultyRepository facultyRepository) {
+    private final Logger readLogger = LoggerFactory.getLogger(FacultyService.class.getName() + ".read");
+    public FacultyService(FacultyRepository facultyRepository, EntityChangeStamps entityChangeStamps) {
         this.facultyRepository = facultyRepository;
+        this.entityChangeStamps = entityChangeStamps;
     }
 
     public Faculty addFaculty(Faculty faculty) {
@@ -22,56 +33,78 @@ public class FacultyService {
     }
 
     public Faculty findFaculty(Long id) {
-        logger.info("Поиск факультета");
+        readLogger.info("Поиск факультета");
         return facultyRepository.findById(id).get();
     }
 
+    @Transactional(readOnly = true)
+    public Long findVersion(long id) {
+        return facultyRepository.findVersionById(id).orElse(null);
+    }
+
     public Faculty editFaculty(Faculty faculty) {
-        if (facultyRepository.findById(faculty.getId()).isEmpty()) {
-            logger.warn("Факультет {} не найден", faculty);
+        Faculty current = facultyRepository.findById(faculty.getId()).orElse(null);
+        if (current == null) {
+            logger.warn("Факультет {} не найден", faculty.getId());
             return null;
         }
-        return facultyRepository.save(faculty);
+        current.setName(faculty.getName());
+        current.setColor(faculty.getColor());
+        return facultyRepository.save(current);
+    }
+
+    public PatchResult patchFaculty(long id, FacultyPatch patch, Long expectedVersion) {
+        logger.info("Частичное изменение факультета {}: {}", id, patch);
+        Optional<FacultyUpdate> found = facultyRepository.patch(id, patch.name(), patch.color(), expectedVersion);
+        if (found.isEmpty()) {
+            logger.warn("Факультет {} не найден", id);
+            return PatchResult.notFound();
+        }
+        if (!found.get().isApplied()) {
+            logger.warn("Факультет {} изменен другим запросом, ожидалась версия {}", id, expectedVersion);
+            return PatchResult.conflict();
+        }
+        entityChangeStamps.bulkUpdated(Faculty.class, id);
+        return PatchResult.applied(String.valueOf(found.get().version()));
     }
 
     public Faculty deleteFaculty(long id) {
         logger.info("Удаление факультета по id: {}", id);
         Faculty faculty = findFaculty(id);
         if (faculty != null) {
-            facultyRepository.deleteById(id);
+            facultyRepository.delete(faculty);
         }
         return faculty;
     }
 
     public Collection<Faculty> findByColor(String color) {
-        logger.info("Получение списка факультетов по color: {}",  color);
+        readLogger.info("Получение списка факультетов по color: {}",  color);
         return facultyRepository.findByColor(color);
     }
 
     public Faculty findFirstFacultyByNameIgnoreCase(String name) {
-        logger.info("Получение факультета по имени {} с игнорированием регистра", name);
+        readLogger.info("Получение факультета по имени {} с игнорированием регистра", name);
         return facultyRepository.findFirstFacultyByNameIgnoreCase(name);
     }
 
     public Faculty findFirstFacultyByColorIgnoreCase(String color) {
-        logger.info("Получение факультета по цвету {} с игнорированием регистра", color);
+        readLogger.info("Получение факультета по цвету {} с игнорированием регистра", color);
         return facultyRepository.findFirstFacultyByColorIgnoreCase(color);
     }
 
     public Faculty findFacultyByStudentId(Long id) {
-        logger.info("Поиск факультета по id студента {} c использованием запроса", id);
+        readLogger.info("Поиск факультета по id студента {} c использованием запроса", id);
         return facultyRepository.findFacultyByStudentId(id);
     }
 
     public String getMaxLengthNameOfFaculty() {
-        String[] result = {""};
-        facultyRepository.findAll().stream()
-                .map(Faculty::getName)
-                .forEach(s -> {
-                    if (result[0].length() < s.length()) {
-                        result[0] = s;
-                    }
-                });
-        return  result[0];
+        readLogger.info("Получение самого длинного названия факультета");
+        return facultyRepository.findMaxLengthName().orElse("");
+    }
+
+    @Transactional(readOnly = true)
+    public List<FacultySummary> getSummaries() {
+        readLogger.info("Получение сводки по факультетам");
+        return facultyRepository.findSummaries();
     }
 }
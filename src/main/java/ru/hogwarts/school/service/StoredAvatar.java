@@ -0,0 +1,6 @@
+package ru.hogwarts.school.service;
+
+import java.nio.file.Path;
+
+public record StoredAvatar(String contentHash, Path filePath, long fileSize) {
+}
@@ -0,0 +1,127 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.StudentBatchResult;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Массовое создание и изменение студентов. Список обрабатывается частями по
+ * {@code students.batch.chunk-size}, каждая часть — одна транзакция, в которой Hibernate
+ * отправляет вставки и обновления пакетами JDBC. Если часть не удалось сохранить,
+ * ее записи повторяются по одной, чтобы вернуть результат для каждой.
+ */
+@Service
+public class StudentBatchService {
+
+    private final Logger logger = LoggerFactory.getLogger(StudentBatchService.class);
+
+    private final StudentRepository studentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    public StudentBatchService(StudentRepository studentRepository,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${students.batch.chunk-size:500}") int chunkSize) {
+        this.studentRepository = studentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+    }
+
+    public List<StudentBatchResult> addStudents(List<Student> students) {
+        logger.info("Массовое добавление {} студентов", students.size());
+        List<StudentBatchResult> results = new ArrayList<>(students.size());
+        for (int from = 0; from < students.size(); from += chunkSize) {
+            int offset = from;
+            List<Student> chunk = students.subList(from, Math.min(from + chunkSize, students.size()));
+            chunk.forEach(student -> student.setId(0));
+            try {
+                List<Student> saved = transactionTemplate.execute(status -> studentRepository.saveAll(chunk));
+                for (int i = 0; i < saved.size(); i++) {
+                    results.add(StudentBatchResult.created(offset + i, saved.get(i).getId()));
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Не удалось сохранить пакет студентов с позиции {}, сохраняем по одному", offset, e);
+                for (int i = 0; i < chunk.size(); i++) {
+                    chunk.get(i).setId(0);
+                    results.add(addOne(offset + i, chunk.get(i)));
+                }
+            }
+        }
+        return results;
+    }
+
+    public List<StudentBatchResult> editStudents(List<Student> students) {
+        logger.info("Массовое изменение {} студентов", students.size());
+        List<StudentBatchResult> results = new ArrayList<>(students.size());
+        for (int from = 0; from < students.size(); from += chunkSize) {
+            int offset = from;
+            List<Student> chunk = students.subList(from, Math.min(from + chunkSize, students.size()));
+            try {
+                results.addAll(transactionTemplate.execute(status -> editChunk(offset, chunk)));
+            } catch (RuntimeException e) {
+                logger.warn("Не удалось изменить пакет студентов с позиции {}, изменяем по одному", offset, e);
+                for (int i = 0; i < chunk.size(); i++) {
+                    results.add(editOne(offset + i, chunk.get(i)));
+                }
+            }
+        }
+        return results;
+    }
+
+    private List<StudentBatchResult> editChunk(int offset, List<Student> chunk) {
+        Set<Long> ids = chunk.stream().map(Student::getId).collect(Collectors.toSet());
+        Map<Long, Student> existing = studentRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Student::getId, Function.identity()));
+        List<StudentBatchResult> results = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            Student student = chunk.get(i);
+            Student current = existing.get(student.getId());
+            if (current == null) {
+                results.add(StudentBatchResult.notFound(offset + i, student.getId()));
+                continue;
+            }
+            copyState(student, current);
+            results.add(StudentBatchResult.updated(offset + i, student.getId()));
+        }
+        return results;
+    }
+
+    private StudentBatchResult addOne(int index, Student student) {
+        try {
+            Student saved = transactionTemplate.execute(status -> studentRepository.save(student));
+            return StudentBatchResult.created(index, saved.getId());
+        } catch (RuntimeException e) {
+            return StudentBatchResult.failed(index, null, NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+    }
+
+    private StudentBatchResult editOne(int index, Student student) {
+        try {
+            return transactionTemplate.execute(status -> studentRepository.findById(student.getId())
+                    .map(current -> {
+                        copyState(student, current);
+                        return StudentBatchResult.updated(index, student.getId());
+                    })
+                    .orElseGet(() -> StudentBatchResult.notFound(index, student.getId())));
+        } catch (RuntimeException e) {
+            return StudentBatchResult.failed(index, student.getId(),
+                    NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+    }
+
+    private void copyState(Student source, Student target) {
+        target.setName(source.getName());
+        target.setAge(source.getAge());
+        target.setFaculty(source.getFaculty());
+    }
+}
@@ -0,0 +1,25 @@
+package ru.hogwarts.school.service;
+
+import java.util.Arrays;
+
+public enum StudentExportFormat {
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String mediaType;
+
+    StudentExportFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public static StudentExportFormat of(String name) {
+        return Arrays.stream(values())
+                .filter(format -> format.name().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Неизвестный формат выгрузки: " + name));
+    }
+}
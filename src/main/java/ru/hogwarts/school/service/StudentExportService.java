@@ -0,0 +1,96 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+@Service
+public class StudentExportService {
+
+    private static final String CSV_HEADER = "id,name,age,faculty_id,faculty_name,faculty_color";
+    private final Logger logger = LoggerFactory.getLogger(StudentExportService.class);
+
+    private final StudentRepository studentRepository;
+    private final ObjectMapper objectMapper;
+
+    public StudentExportService(StudentRepository studentRepository, ObjectMapper objectMapper) {
+        this.studentRepository = studentRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(readOnly = true)
+    public void exportStudents(StudentExportFormat format, OutputStream os) throws IOException {
+        logger.info("Выгрузка студентов в формате {}", format);
+        try (Stream<Student> students = studentRepository.streamAll()) {
+            switch (format) {
+                case NDJSON -> writeNdjson(students, os);
+                case CSV -> writeCsv(students, os);
+            }
+        }
+    }
+
+    private void writeNdjson(Stream<Student> students, OutputStream os) throws IOException {
+        boolean empty = true;
+        try (SequenceWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(os)) {
+            for (Student student : (Iterable<Student>) students::iterator) {
+                writer.write(student);
+                empty = false;
+            }
+        }
+        // Разделитель ставится только между строками, последнюю завершаем сами; пустая выгрузка - пустое тело
+        if (!empty) {
+            os.write('\n');
+        }
+    }
+
+    private void writeCsv(Stream<Student> students, OutputStream os) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        for (Student student : (Iterable<Student>) students::iterator) {
+            Faculty faculty = student.getFaculty();
+            writer.write(Long.toString(student.getId()));
+            writer.write(',');
+            writer.write(escapeCsv(student.getName()));
+            writer.write(',');
+            writer.write(Integer.toString(student.getAge()));
+            writer.write(',');
+            if (faculty != null) {
+                writer.write(Long.toString(faculty.getId()));
+                writer.write(',');
+                writer.write(escapeCsv(faculty.getName()));
+                writer.write(',');
+                writer.write(escapeCsv(faculty.getColor()));
+            } else {
+                writer.write(",,");
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,28 +1,35 @@
 package ru.hogwarts.school.service;
 
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.PatchResult;
+import ru.hogwarts.school.dto.StudentPatch;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.repository.StudentUpdate;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.*;
 import java.util.List;
-import java.util.function.Consumer;
-
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
 
 @Service
 @Transactional
@@ -31,108 +38,206 @@ public class StudentService {
     private static final int MAX_STUDENTS = 6;
     private static final String PREFIX = "A";
     private final Logger logger = LoggerFactory.getLogger(StudentService.class);
+    private final Logger readLogger = LoggerFactory.getLogger(StudentService.class.getName() + ".read");
 
-    @Value("${avatars.dir.path}")
-    private String avatarsDir;
     private final StudentRepository studentRepository;
     private final AvatarRepository avatarRepository;
+    private final StudentStatistics studentStatistics;
+    private final AvatarPreviewService avatarPreviewService;
+    private final AvatarStorage avatarStorage;
+    private final AvatarPreviewCache avatarPreviewCache;
+    private final BackgroundTaskExecutor backgroundTaskExecutor;
+    private final EntityChangeStamps entityChangeStamps;
+    private final DataSize maxAvatarSize;
 
-    private LinkedList<Student> students;
-
-    public StudentService(StudentRepository studentRepository, AvatarRepository avatarRepository) {
+    public StudentService(StudentRepository studentRepository, AvatarRepository avatarRepository,
+                          StudentStatistics studentStatistics, AvatarPreviewService avatarPreviewService,
+                          AvatarStorage avatarStorage, AvatarPreviewCache avatarPreviewCache,
+                          BackgroundTaskExecutor backgroundTaskExecutor,
+                          EntityChangeStamps entityChangeStamps,
+                          @Value("${avatars.max-size:300KB}") DataSize maxAvatarSize) {
         this.studentRepository = studentRepository;
         this.avatarRepository = avatarRepository;
+        this.studentStatistics = studentStatistics;
+        this.avatarPreviewService = avatarPreviewService;
+        this.avatarStorage = avatarStorage;
+        this.avatarPreviewCache = avatarPreviewCache;
+        this.backgroundTaskExecutor = backgroundTaskExecutor;
+        this.entityChangeStamps = entityChangeStamps;
+        this.maxAvatarSize = maxAvatarSize;
     }
 
     public Student addStudent(Student student) {
         logger.debug("Добавили студента");
-        return studentRepository.save(student);
+        return withFaculty(studentRepository.save(student));
     }
 
+    @Transactional(readOnly = true)
     public Student findStudent(long id) {
-        logger.debug("Поиск студента");
-        return studentRepository.findById(id).get();
+        readLogger.debug("Поиск студента");
+        return withFaculty(studentRepository.findById(id).get());
+    }
+
+    @Transactional(readOnly = true)
+    public String findRepresentationVersion(long id) {
+        return studentRepository.findRepresentationVersionById(id).orElse(null);
     }
 
+    /**
+     * Переносит поля на загруженную сущность, а не сливает присланную: клиент не передает версию,
+     * и merge отсоединенного объекта с нулевой версией упал бы на оптимистической блокировке.
+     */
     public Student editStudent(Student student) {
-        logger.info("Редактирование данных студента: {}", student);
-        if (studentRepository.findById(student.getId()).isEmpty()) {
-            logger.warn("Студенте {} не найден.", student);
+        logger.info("Редактирование данных студента {}", student.getId());
+        Student current = studentRepository.findById(student.getId()).orElse(null);
+        if (current == null) {
+            logger.warn("Студент {} не найден.", student.getId());
             return null;
         }
-        return studentRepository.save(student);
+        current.setName(student.getName());
+        current.setAge(student.getAge());
+        current.setFaculty(student.getFaculty());
+        return withFaculty(studentRepository.save(current));
+    }
+
+    /**
+     * Частичное изменение одним UPDATE. События Hibernate при этом не возникают, поэтому
+     * статистика и кеш второго уровня обновляются здесь после коммита.
+     */
+    public PatchResult patchStudent(long id, StudentPatch patch, Long expectedVersion) {
+        logger.info("Частичное изменение студента {}: {}", id, patch);
+        Optional<StudentUpdate> found = studentRepository.patch(id, patch.name(), patch.age(), patch.facultyId(),
+                expectedVersion);
+        if (found.isEmpty()) {
+            logger.warn("Студент {} не найден.", id);
+            return PatchResult.notFound();
+        }
+        StudentUpdate update = found.get();
+        if (!update.isApplied()) {
+            logger.warn("Студент {} изменен другим запросом, ожидалась версия {}", id, expectedVersion);
+            return PatchResult.conflict();
+        }
+        entityChangeStamps.bulkUpdated(Student.class, id);
+        afterCommit(() -> {
+            studentStatistics.studentRemoved(update.oldAge(), update.oldFacultyId());
+            studentStatistics.studentAdded(update.age(), update.facultyId());
+        });
+        return PatchResult.applied(update.getRepresentationVersion());
     }
 
     public Student deleteStudent(long id) {
         logger.info("Удление студента по id: {}", id);
         Student student = findStudent(id);
         if (student != null) {
-            studentRepository.deleteById(id);
+            studentRepository.delete(student);
+            afterCommit(() -> avatarPreviewCache.invalidate(id));
         }
         return student;
     }
 
     public Collection<Student> findByAge(int age) {
-        logger.info("Поиск студентов по age: {}", age);
+        readLogger.info("Поиск студентов по age: {}", age);
         return studentRepository.findByAge(age);
     }
 
     public Collection<Student> findStudentByAgeBetween(int min, int max) {
-        logger.info("Поиск студентов в диапазоне возрастов от {} до {}", min, max);
+        readLogger.info("Поиск студентов в диапазоне возрастов от {} до {}", min, max);
         return studentRepository.findStudentByAgeBetween(min, max);
     }
 
     public Faculty getFacultyOfStudent(Long id) {
-        logger.info("Поиск факультета по id: {} студента.", id);
-        Student student = studentRepository.findStudentById(id);
-        if (student == null) {
-            return null;
-        }
-        return student.getFaculty();
+        readLogger.info("Поиск факультета по id: {} студента.", id);
+        return studentRepository.findById(id)
+                .map(Student::getFaculty)
+                .orElse(null);
     }
 
     public Collection<Student> getStudentsOfFaculty(Long id) {
-        logger.info("Поиск студентов по id факультета: {}", id);
+        readLogger.info("Поиск студентов по id факультета: {}", id);
         return studentRepository.findStudentsByFaculty_Id(id);
     }
 
     public Avatar findAvatar(long studentId) {
-        logger.info("Поиск аватара по id студента: " + studentId);
+        readLogger.info("Поиск аватара по id студента: {}", studentId);
         return avatarRepository.findAvatarByStudent_Id(studentId).orElseThrow(() -> {
             logger.error("Аватар с id: {} не найден", studentId);
             return new NoSuchElementException("Аватар не найден.");
         });
     }
 
+    /**
+     * Превью для ответа: из кеша вне кучи, а при промахе из базы с сохранением в кеш.
+     * Без транзакции, чтобы попадание в кеш не брало соединение из пула.
+     * Возвращает null, пока превью еще строится; полученное превью закрывается после записи в ответ.
+     *
+     * @throws AvatarPreviewFailedException если изображение не удалось разобрать и превью не будет
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AvatarPreviewCache.CachedPreview findAvatarPreview(long studentId) {
+        AvatarPreviewCache.CachedPreview cached = avatarPreviewCache.get(studentId);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = avatarPreviewCache.stamp();
+        Avatar avatar = findAvatar(studentId);
+        if (avatar.getData() == null) {
+            if (avatar.isPreviewFailed()) {
+                throw new AvatarPreviewFailedException(studentId);
+            }
+            return null;
+        }
+        avatarPreviewCache.put(studentId, stamp, avatar.getMediaType(), avatar.getData());
+        return AvatarPreviewCache.CachedPreview.of(avatar.getMediaType(), avatar.getData());
+    }
+
     public void uploadAvatar(Long studentId, MultipartFile file) throws IOException {
         logger.info("Загрузка аватара по id студента: {}", studentId);
         Student student = studentRepository.findStudentById(studentId);
-        Path filePath = Path.of(avatarsDir, studentId + "." + getExtension(file.getOriginalFilename()));
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-        try (InputStream is = file.getInputStream();
-             OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-             BufferedInputStream bis = new BufferedInputStream(is, 1024);
-             BufferedOutputStream bos = new BufferedOutputStream(os, 1024)){
-            bis.transferTo(bos);
-        }
+        byte[] content = readAvatar(file);
+        String extension = getExtension(file.getOriginalFilename());
+        StoredAvatar stored = avatarStorage.store(content, extension);
         Avatar avatar = avatarRepository.findAvatarByStudent_Id(studentId).orElseGet(Avatar::new);
+        String previousFilePath = avatar.getFilePath();
+        boolean sameContent = stored.contentHash().equals(avatar.getContentHash()) && avatar.getData() != null;
+        // Готовое превью с тем же хешем ищется до изменения аватара: иначе автосброс перед запросом
+        // запишет новый хеш со старым превью, и запрос найдет этот же аватар.
+        byte[] preview = sameContent ? avatar.getData()
+                : avatarRepository.findFirstByContentHashAndDataIsNotNull(stored.contentHash())
+                        .map(Avatar::getData)
+                        .orElse(null);
         avatar.setStudent(student);
-        avatar.setFilePath(filePath.toString());
-        avatar.setFileSize(file.getSize());
+        avatar.setFilePath(stored.filePath().toString());
+        avatar.setFileSize(stored.fileSize());
         avatar.setMediaType(file.getContentType());
-        avatar.setData(generateImagePreview(filePath));
+        if (!stored.contentHash().equals(avatar.getContentHash()) || avatar.getUploadedAt() == null) {
+            avatar.setUploadedAt(Instant.now());
+        }
+        avatar.setContentHash(stored.contentHash());
+        avatar.setData(preview);
+        avatar.setPreviewFailed(false);
         avatarRepository.save(avatar);
+        if (avatar.getData() == null) {
+            avatarPreviewService.schedulePreview(avatar.getId(), stored.contentHash(), content, extension);
+        }
+        afterCommit(() -> avatarPreviewCache.invalidate(studentId));
+        if (previousFilePath != null && !previousFilePath.equals(avatar.getFilePath())) {
+            avatarStorage.release(Path.of(previousFilePath));
+        }
     }
 
     public int getAllStudents() {
-        logger.info("Получение всех студентов");
-        return studentRepository.getAllStudents();
+        readLogger.info("Получение всех студентов");
+        return studentStatistics.getCount();
+    }
+
+    public int getCountOfFaculty(long facultyId) {
+        readLogger.info("Получение количества студентов факультета {}", facultyId);
+        return studentStatistics.getCountOfFaculty(facultyId);
     }
 
     public int getAverageAgeOfStudents() {
-        logger.info("Получение среднего возраста всех студентов");
-        return studentRepository.getAverageAgeOfStudents();
+        readLogger.info("Получение среднего возраста всех студентов");
+        return studentStatistics.getAverageAge();
     }
 
     public List<Student> getFiveLastStudentById() {
@@ -141,75 +246,161 @@ public class StudentService {
             logger.error(message);
             throw new UnsupportedOperationException(message);
         }
-        return studentRepository.getFiveLastStudentById();
+        List<Student> students = new ArrayList<>(studentRepository.findTop5ByOrderByIdDesc());
+        Collections.reverse(students);
+        return students;
     }
 
     public List<String> getAllStudentStartWithA() {
-        logger.info("Получение отсортированного списка имен студентов начинающихся с {}",
+        readLogger.info("Получение отсортированного списка имен студентов начинающихся с {}",
                 PREFIX);
-        return studentRepository.findAll()
-                .stream()
-                .filter(s -> s.getName().startsWith(PREFIX))
-                .map(s -> s.getName().toUpperCase())
-                .sorted(String::compareTo)
-                .toList();
+        return studentRepository.findUpperCaseNamesStartingWith(PREFIX);
     }
 
     public int getAverageAgeOfStudentsFromStream() {
-        logger.info("Получение среднего возраста всех студентов");
-        return (int) studentRepository.findAll().stream()
-                .mapToInt(Student::getAge)
-                .average().orElse(0);
+        readLogger.info("Получение среднего возраста всех студентов");
+        Double averageAge = studentRepository.findAverageAge();
+        return averageAge == null ? 0 : averageAge.intValue();
+    }
+
+    /**
+     * Печатает первых шесть студентов: двух в вызывающем потоке, остальных парами в фоновых задачах.
+     * Каждая пара печатается по своим индексам, поэтому порядок между парами не определен.
+     * Возвращает имена в порядке печати после завершения всех задач.
+     */
+    public CompletableFuture<List<String>> printFirstSixStudentsParallel() {
+        StudentPrintQueue queue = new StudentPrintQueue(getFirstSixStudents());
+        return printInParallel(queue::printAt, queue);
     }
 
-    public void printFirstSixStudentsParallel(Consumer<Integer> consumer) {
-        validateStudents();
+    /**
+     * То же, что {@link #printFirstSixStudentsParallel()}, но каждый вызов забирает следующего
+     * студента из очереди запроса, так что студенты выдаются строго по возрастанию id и в том же
+     * порядке возвращаются. Строки в консоли от разных потоков при этом могут перемешаться.
+     */
+    public CompletableFuture<List<String>> printFirstSixStudentsSynchronized() {
+        StudentPrintQueue queue = new StudentPrintQueue(getFirstSixStudents());
+        return printInParallel(index -> queue.printNext(), queue);
+    }
+
+    private CompletableFuture<List<String>> printInParallel(IntConsumer consumer, StudentPrintQueue queue) {
         consumer.accept(0);
         consumer.accept(1);
 
-        new Thread(() -> {
+        CompletableFuture<Void> first = backgroundTaskExecutor.submit(() -> {
             consumer.accept(2);
             consumer.accept(3);
-        }).start();
+        });
 
-        new Thread(() -> {
+        CompletableFuture<Void> second = backgroundTaskExecutor.submit(() -> {
             consumer.accept(4);
             consumer.accept(5);
-        }).start();
+        });
+
+        return CompletableFuture.allOf(first, second)
+                .whenComplete((result, e) -> {
+                    if (e != null) {
+                        logger.error("Ошибка при параллельной печати студентов", e);
+                    }
+                })
+                .thenApply(result -> queue.getPrinted());
+    }
+
+    /**
+     * После merge факультет может оказаться непроинициализированным прокси,
+     * а open-in-view выключен - загружаем его до выхода из транзакции.
+     */
+    private Student withFaculty(Student student) {
+        if (student != null) {
+            Hibernate.initialize(student.getFaculty());
+        }
+        return student;
     }
 
-    public synchronized void printStudentNameSynchronized() {
-        System.out.println(students.pollFirst());
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 
-    public void printNameStudent(int index) {
-        System.out.println(students.get(index));
+    /**
+     * Читает загрузку в память один раз, не больше avatars.max-size байт. Размер части
+     * известен после разбора multipart, но поток проверяется и сам, если размер не указан.
+     */
+    private byte[] readAvatar(MultipartFile file) throws IOException {
+        long limit = maxAvatarSize.toBytes();
+        if (file.getSize() > limit) {
+            throw new MaxUploadSizeExceededException(limit);
+        }
+        try (InputStream is = file.getInputStream()) {
+            byte[] content = is.readNBytes((int) limit + 1);
+            if (content.length > limit) {
+                throw new MaxUploadSizeExceededException(limit);
+            }
+            return content;
+        }
     }
 
     private String getExtension(String fileName) {
         return fileName.substring(fileName.lastIndexOf(".") + 1);
     }
 
-    private byte[] generateImagePreview(Path filePath) throws IOException {
-        try (InputStream is = Files.newInputStream(filePath);
-        BufferedInputStream bis = new BufferedInputStream(is, 1024);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream()){
-            BufferedImage image = ImageIO.read(bis);
-            int height = image.getHeight() / (image.getWidth() / 100);
-            BufferedImage preview = new BufferedImage(100, height, image.getType());
-            Graphics2D graphics = preview.createGraphics();
-            graphics.drawImage(image, 0, 0, 100, height, null);
-            graphics.dispose();
-            ImageIO.write(preview, getExtension(filePath.getFileName().toString()), baos);
-            return baos.toByteArray();
+    private List<Student> getFirstSixStudents() {
+        List<Student> students = studentRepository.getSixFirstStudent();
+        if (students.size() < MAX_STUDENTS) {
+            throw new NoSuchElementException("В институте недостаточное количество студентов");
         }
+        return List.copyOf(students);
     }
 
-    private void validateStudents() {
-        students = new LinkedList<>(studentRepository.getSixFirstStudent());
-        System.out.println(students);
-        if(students.size() < MAX_STUDENTS) {
-            throw new NoSuchElementException("В институте недостаточное количество студентов");
+    /**
+     * Очередь печати одного запроса. Не разделяется между запросами, поэтому обходится без блокировок:
+     * индексы выдает {@link AtomicInteger}, а имя записывается в ячейку массива по выданному номеру.
+     * Для {@link #printNext()} номер ячейки - это сам взятый индекс, так что порядок результата
+     * не зависит от того, какой поток допечатал раньше.
+     */
+    private static class StudentPrintQueue {
+        private final List<Student> students;
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger finished = new AtomicInteger();
+        private final AtomicReferenceArray<String> printed;
+
+        StudentPrintQueue(List<Student> students) {
+            this.students = students;
+            this.printed = new AtomicReferenceArray<>(students.size());
+        }
+
+        void printNext() {
+            int index = next.getAndIncrement();
+            print(index, index);
+        }
+
+        void printAt(int index) {
+            print(index, finished.getAndIncrement());
+        }
+
+        private void print(int index, int slot) {
+            Student student = students.get(index);
+            System.out.println(student);
+            printed.set(slot, student.getName());
+        }
+
+        List<String> getPrinted() {
+            List<String> names = new ArrayList<>(printed.length());
+            for (int i = 0; i < printed.length(); i++) {
+                String name = printed.get(i);
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+            return names;
         }
     }
 }
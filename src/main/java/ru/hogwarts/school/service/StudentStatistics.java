@@ -0,0 +1,105 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.repository.FacultyStudentCount;
+import ru.hogwarts.school.repository.StudentAgeTotals;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики по таблице student, которые обновляются после коммита изменений
+ * ({@link StudentStatisticsEventListener}) и периодически сверяются с базой,
+ * чтобы /student/count и /student/avgAge не сканировали таблицу на каждый запрос.
+ */
+@Service
+public class StudentStatistics {
+
+    private final Logger logger = LoggerFactory.getLogger(StudentStatistics.class);
+
+    private final StudentRepository studentRepository;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong ageSum = new AtomicLong();
+    private final Map<Long, AtomicLong> facultyCounts = new ConcurrentHashMap<>();
+    private volatile boolean initialized;
+
+    public StudentStatistics(StudentRepository studentRepository) {
+        this.studentRepository = studentRepository;
+    }
+
+    public void studentAdded(int age, Long facultyId) {
+        count.incrementAndGet();
+        ageSum.addAndGet(age);
+        if (facultyId != null) {
+            facultyCounts.computeIfAbsent(facultyId, id -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public void studentRemoved(int age, Long facultyId) {
+        count.decrementAndGet();
+        ageSum.addAndGet(-age);
+        if (facultyId != null) {
+            facultyCounts.computeIfAbsent(facultyId, id -> new AtomicLong()).decrementAndGet();
+        }
+    }
+
+    public int getCount() {
+        if (!initialized) {
+            return studentRepository.getAllStudents();
+        }
+        return (int) count.get();
+    }
+
+    public int getAverageAge() {
+        if (!initialized) {
+            StudentAgeTotals totals = studentRepository.getAgeTotals();
+            return averageAge(totals.getCount(), totals.getAgeSum());
+        }
+        return averageAge(count.get(), ageSum.get());
+    }
+
+    public int getCountOfFaculty(long facultyId) {
+        if (!initialized) {
+            return (int) studentRepository.countByFaculty_Id(facultyId);
+        }
+        AtomicLong facultyCount = facultyCounts.get(facultyId);
+        return facultyCount == null ? 0 : (int) facultyCount.get();
+    }
+
+    /**
+     * Изменения, закоммиченные между чтением итогов и их записью, могут быть учтены
+     * неточно — такое расхождение исправит следующая сверка.
+     */
+    @Scheduled(fixedDelayString = "${students.statistics.reconcile-interval:PT5M}")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        StudentAgeTotals totals = studentRepository.getAgeTotals();
+        Map<Long, Long> actualFacultyCounts = new HashMap<>();
+        for (FacultyStudentCount facultyCount : studentRepository.countStudentsByFaculty()) {
+            actualFacultyCounts.put(facultyCount.getFacultyId(), facultyCount.getCount());
+        }
+        if (initialized && (count.get() != totals.getCount() || ageSum.get() != totals.getAgeSum())) {
+            logger.warn("Статистика студентов разошлась с базой: count {} -> {}, ageSum {} -> {}",
+                    count.get(), totals.getCount(), ageSum.get(), totals.getAgeSum());
+        }
+        count.set(totals.getCount());
+        ageSum.set(totals.getAgeSum());
+        facultyCounts.keySet().retainAll(actualFacultyCounts.keySet());
+        actualFacultyCounts.forEach((facultyId, facultyCount) ->
+                facultyCounts.computeIfAbsent(facultyId, id -> new AtomicLong()).set(facultyCount));
+        initialized = true;
+        logger.debug("Статистика студентов сверена с базой: {} студентов", totals.getCount());
+    }
+
+    private int averageAge(long count, long ageSum) {
+        return count == 0 ? 0 : (int) Math.round((double) ageSum / count);
+    }
+}
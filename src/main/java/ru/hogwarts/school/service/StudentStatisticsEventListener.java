@@ -0,0 +1,87 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+/**
+ * Передает в {@link StudentStatistics} изменения студентов только после успешного коммита.
+ */
+@Component
+public class StudentStatisticsEventListener implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final StudentStatistics studentStatistics;
+
+    public StudentStatisticsEventListener(EntityManagerFactory entityManagerFactory,
+                                          StudentStatistics studentStatistics) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.studentStatistics = studentStatistics;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (event.getEntity() instanceof Student student) {
+            studentStatistics.studentAdded(student.getAge(), facultyId(student.getFaculty()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (event.getEntity() instanceof Student student && event.getOldState() != null) {
+            EntityPersister persister = event.getPersister();
+            Object[] oldState = event.getOldState();
+            studentStatistics.studentRemoved((Integer) oldState[persister.getPropertyIndex("age")],
+                    facultyId((Faculty) oldState[persister.getPropertyIndex("faculty")]));
+            studentStatistics.studentAdded(student.getAge(), facultyId(student.getFaculty()));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (event.getEntity() instanceof Student) {
+            EntityPersister persister = event.getPersister();
+            Object[] deletedState = event.getDeletedState();
+            studentStatistics.studentRemoved((Integer) deletedState[persister.getPropertyIndex("age")],
+                    facultyId((Faculty) deletedState[persister.getPropertyIndex("faculty")]));
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return Student.class.equals(persister.getMappedClass());
+    }
+
+    private Long facultyId(Faculty faculty) {
+        return faculty == null ? null : faculty.getId();
+    }
+}
@@ -0,0 +1,115 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.SumReport;
+import ru.hogwarts.school.dto.SumResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.LongStream;
+
+@Service
+public class SumService {
+
+    private static final long FORK_THRESHOLD = 10_000;
+    private final Logger logger = LoggerFactory.getLogger(SumService.class);
+
+    private final ForkJoinPool sumForkJoinPool;
+    private final long maxN;
+    private final SumStrategy defaultStrategy;
+    private final Semaphore permits;
+
+    public SumService(ForkJoinPool sumForkJoinPool,
+                      @Value("${sum.max-n:1000000000}") long maxN,
+                      @Value("${sum.default-strategy:closed-form}") String defaultStrategy,
+                      @Value("${sum.max-concurrent:2}") int maxConcurrent) {
+        this.sumForkJoinPool = sumForkJoinPool;
+        this.maxN = maxN;
+        this.defaultStrategy = SumStrategy.of(defaultStrategy);
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Стратегия для запросов без явного выбора. Остальные стратегии считаются только по запросу.
+     */
+    public SumStrategy getDefaultStrategy() {
+        return defaultStrategy;
+    }
+
+    public boolean isValidRange(long n) {
+        return n >= 1 && n <= maxN;
+    }
+
+    /**
+     * Считает сумму 1..n каждой из стратегий по очереди в отдельном пуле,
+     * чтобы замеры не мешали друг другу и не занимали потоки обработки запросов.
+     * Одновременно выполняется не больше sum.max-concurrent вычислений, сверх этого
+     * бросается {@link RejectedExecutionException}, а не копится очередь.
+     */
+    public CompletableFuture<SumReport> sum(long n, List<SumStrategy> strategies) {
+        if (!isValidRange(n)) {
+            throw new IllegalArgumentException("Размер диапазона должен быть от 1 до " + maxN);
+        }
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("Слишком много одновременных вычислений суммы");
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> new SumReport(n, sumForkJoinPool.getParallelism(),
+                            strategies.stream().map(strategy -> compute(n, strategy)).toList()), sumForkJoinPool)
+                    .whenComplete((report, e) -> permits.release());
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public SumResult compute(long n, SumStrategy strategy) {
+        long start = System.nanoTime();
+        long sum = switch (strategy) {
+            case SEQUENTIAL -> LongStream.rangeClosed(1, n).sum();
+            // Параллельный стрим выполняется в пуле потока, который его запустил. Запускаем его
+            // в своем пуле явно, чтобы он не занимал общий пул и при вызове извне.
+            case PARALLEL_STREAM -> sumForkJoinPool
+                    .submit(() -> LongStream.rangeClosed(1, n).parallel().sum())
+                    .join();
+            case FORK_JOIN -> sumForkJoinPool.invoke(new RangeSumTask(1, n));
+            case CLOSED_FORM -> n % 2 == 0 ? (n / 2) * (n + 1) : n * ((n + 1) / 2);
+        };
+        long elapsed = System.nanoTime() - start;
+        logger.debug("Сумма 1..{} стратегией {} посчитана за {} нс", n, strategy, elapsed);
+        return new SumResult(strategy, sum, elapsed);
+    }
+
+    private static class RangeSumTask extends RecursiveTask<Long> {
+        private final long from;
+        private final long to;
+
+        RangeSumTask(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from < FORK_THRESHOLD) {
+                long sum = 0;
+                for (long i = from; i <= to; i++) {
+                    sum += i;
+                }
+                return sum;
+            }
+            long middle = (from + to) >>> 1;
+            RangeSumTask left = new RangeSumTask(from, middle);
+            left.fork();
+            long right = new RangeSumTask(middle + 1, to).compute();
+            return left.join() + right;
+        }
+    }
+}
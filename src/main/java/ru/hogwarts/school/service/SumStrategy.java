@@ -0,0 +1,17 @@
+package ru.hogwarts.school.service;
+
+import java.util.Arrays;
+
+public enum SumStrategy {
+    SEQUENTIAL,
+    PARALLEL_STREAM,
+    FORK_JOIN,
+    CLOSED_FORM;
+
+    public static SumStrategy of(String name) {
+        return Arrays.stream(values())
+                .filter(strategy -> strategy.name().equalsIgnoreCase(name.replace('-', '_')))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Неизвестная стратегия суммирования: " + name));
+    }
+}
@@ -4,4 +4,91 @@
 CREATE INDEX student_name ON student(name)
 
 -- changeset sergey:2
-CREATE INDEX faculty_name_color ON faculty(name, color)
\ No newline at end of file
+CREATE INDEX faculty_name_color ON faculty(name, color)
+
+-- changeset sergey:3
+CREATE INDEX student_name_pattern ON student(name text_pattern_ops)
+
+-- changeset sergey:4
+CREATE INDEX faculty_name_length ON faculty((length(name)) DESC NULLS LAST, id)
+
+
+-- changeset sergey:5
+ALTER TABLE avatar ADD COLUMN content_hash VARCHAR(64)
+
+-- changeset sergey:6
+CREATE INDEX avatar_content_hash ON avatar(content_hash)
+
+-- changeset sergey:7
+CREATE INDEX avatar_file_path ON avatar(file_path)
+
+-- changeset sergey:8
+CREATE INDEX student_age ON student(age)
+
+-- changeset sergey:9
+CREATE INDEX student_faculty_id ON student(faculty_id)
+
+-- changeset sergey:10
+CREATE INDEX avatar_student_id ON avatar(student_id)
+
+-- changeset sergey:11
+ALTER TABLE student ADD COLUMN version BIGINT NOT NULL DEFAULT 0
+
+-- changeset sergey:12
+ALTER TABLE faculty ADD COLUMN version BIGINT NOT NULL DEFAULT 0
+
+-- changeset sergey:13
+ALTER TABLE avatar ADD COLUMN preview_failed BOOLEAN NOT NULL DEFAULT FALSE
+
+-- changeset sergey:14
+ALTER TABLE avatar ADD COLUMN uploaded_at TIMESTAMP WITH TIME ZONE
+
+-- changeset sergey:15
+CREATE TABLE table_version (table_name VARCHAR(64) PRIMARY KEY, version BIGINT NOT NULL DEFAULT 0);
+INSERT INTO table_version(table_name) VALUES ('student'), ('faculty'), ('avatar')
+
+-- changeset sergey:16 splitStatements:false
+CREATE FUNCTION bump_table_version() RETURNS trigger AS $$
+BEGIN
+    UPDATE table_version SET version = version + 1 WHERE table_name = TG_TABLE_NAME;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql
+
+-- changeset sergey:17
+CREATE TRIGGER student_table_version AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON student
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_table_version();
+CREATE TRIGGER faculty_table_version AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON faculty
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_table_version();
+CREATE TRIGGER avatar_table_version AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON avatar
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_table_version()
+
+-- changeset sergey:18
+DROP TRIGGER student_table_version ON student;
+DROP TRIGGER faculty_table_version ON faculty;
+DROP TRIGGER avatar_table_version ON avatar;
+DROP FUNCTION bump_table_version();
+DROP TABLE table_version
+
+-- changeset sergey:19
+CREATE TABLE table_change (table_name VARCHAR(64) NOT NULL, changes BIGINT NOT NULL DEFAULT 1);
+CREATE INDEX table_change_table_name ON table_change(table_name);
+INSERT INTO table_change(table_name, changes) VALUES ('student', 0), ('faculty', 0), ('avatar', 0)
+
+-- changeset sergey:20 splitStatements:false
+CREATE FUNCTION log_table_change() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO table_change(table_name) VALUES (TG_TABLE_NAME);
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql
+
+-- changeset sergey:21
+CREATE TRIGGER student_table_change AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON student
+    FOR EACH STATEMENT EXECUTE FUNCTION log_table_change();
+CREATE TRIGGER faculty_table_change AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON faculty
+    FOR EACH STATEMENT EXECUTE FUNCTION log_table_change();
+CREATE TRIGGER avatar_table_change AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON avatar
+    FOR EACH STATEMENT EXECUTE FUNCTION log_table_change();
+CREATE VIEW table_version AS
+    SELECT table_name, CAST(sum(changes) AS BIGINT) AS version FROM table_change GROUP BY table_name
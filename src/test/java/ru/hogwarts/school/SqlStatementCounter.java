@@ -0,0 +1,41 @@
+package ru.hogwarts.school;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Считает SQL-запросы, которые Hibernate отправляет в базу. Подключается в тестовом
+ * application.properties, поэтому счетчик общий для всех сессий и потоков сервера.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final Queue<String> STATEMENTS = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static void reset() {
+        STATEMENTS.clear();
+    }
+
+    public static List<String> getStatements() {
+        return List.copyOf(STATEMENTS);
+    }
+
+    /**
+     * Падает, если с последнего {@link #reset()} выполнено больше запросов, чем позволяет бюджет.
+     */
+    public static void assertAtMost(int budget) {
+        List<String> statements = getStatements();
+        if (statements.size() > budget) {
+            throw new AssertionError("Ожидалось не больше " + budget + " SQL-запросов, выполнено "
+                    + statements.size() + ":\n" + String.join("\n", statements));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.hogwarts.school.benchmark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Сравнение скорости вставки студентов по одному (POST /student) и пакетом
+ * (POST /student/batch). Не входит в обычный прогон тестов, запуск:
+ * {@code mvn test -Dtest=StudentBatchBenchmark -Dstudents=5000}
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class StudentBatchBenchmark {
+
+    private static final int STUDENTS = Integer.getInteger("students", 2000);
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @AfterEach
+    public void cleanUp() {
+        studentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void compareSingleAndBatchInsert() {
+        List<Student> students = generate(STUDENTS);
+        long start = System.nanoTime();
+        for (Student student : students) {
+            restTemplate.postForObject("/student", student, Student.class);
+        }
+        long single = System.nanoTime() - start;
+        studentRepository.deleteAllInBatch();
+
+        students = generate(STUDENTS);
+        start = System.nanoTime();
+        restTemplate.postForObject("/student/batch", students, Object[].class);
+        long batch = System.nanoTime() - start;
+
+        System.out.printf("POST /student:       %d rows, %.0f rows/sec%n", STUDENTS, rowsPerSecond(single));
+        System.out.printf("POST /student/batch: %d rows, %.0f rows/sec%n", STUDENTS, rowsPerSecond(batch));
+    }
+
+    private List<Student> generate(int count) {
+        List<Student> students = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            students.add(new Student(0, "Student " + i, 16 + i % 10));
+        }
+        return students;
+    }
+
+    private double rowsPerSecond(long nanos) {
+        return STUDENTS * 1_000_000_000.0 / nanos;
+    }
+}
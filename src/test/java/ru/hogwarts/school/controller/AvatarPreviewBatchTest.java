@@ -0,0 +1,214 @@
+package ru.hogwarts.school.controller;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import ru.hogwarts.school.SqlStatementCounter;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Превью для списка студентов приходят одним ответом multipart/mixed и загружаются одним запросом к базе.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class AvatarPreviewBatchTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private AvatarRepository avatarRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Faculty faculty;
+    private final List<Student> students = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        faculty = facultyRepository.save(new Faculty(-1, "Пуффендуй", "Желтый"));
+        for (int width = 120; width <= 140; width += 10) {
+            Student student = new Student(-1, "Student " + width, 17);
+            student.setFaculty(faculty);
+            student = studentRepository.save(student);
+            uploadAvatar(student, width);
+            students.add(student);
+        }
+        for (Student student : students) {
+            awaitStoredPreview(student);
+        }
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        avatarRepository.deleteAll();
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+    }
+
+    @Test
+    public void previewsOfSeveralStudentsTakeOneQuery() {
+        Student withoutAvatar = studentRepository.save(new Student(-1, "Без аватара", 17));
+        String ids = students.get(2).getId() + "," + withoutAvatar.getId() + ","
+                + students.get(0).getId() + "," + students.get(1).getId();
+
+        SqlStatementCounter.reset();
+        ResponseEntity<byte[]> response = restTemplate.getForEntity("/avatar/previews?studentIds=" + ids, byte[].class);
+        SqlStatementCounter.assertAtMost(1);
+
+        Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Map<String, byte[]> parts = parse(response);
+        Assertions.assertThat(parts.keySet()).containsExactly(
+                previewUrl(students.get(2)), previewUrl(students.get(0)), previewUrl(students.get(1)));
+        Assertions.assertThat(parts.get(previewUrl(students.get(0))))
+                .isEqualTo(restTemplate.getForObject(previewUrl(students.get(0)), byte[].class));
+
+        String cachedIds = students.get(0).getId() + "," + students.get(1).getId() + "," + students.get(2).getId();
+        SqlStatementCounter.reset();
+        Assertions.assertThat(parse(restTemplate.getForEntity("/avatar/previews?studentIds=" + cachedIds, byte[].class)))
+                .hasSize(3);
+        SqlStatementCounter.assertAtMost(0);
+    }
+
+    @Test
+    public void facultyPreviewsTakeOneQuery() throws Exception {
+        SqlStatementCounter.reset();
+        ResponseEntity<byte[]> response = restTemplate.getForEntity("/avatar/previews?facultyId=" + faculty.getId(),
+                byte[].class);
+        SqlStatementCounter.assertAtMost(1);
+
+        Map<String, byte[]> parts = parse(response);
+        Assertions.assertThat(parts).hasSize(3);
+        for (Student student : students) {
+            Assertions.assertThat(ImageIO.read(new ByteArrayInputStream(parts.get(previewUrl(student))))
+                    .getWidth()).isEqualTo(100);
+        }
+        Assertions.assertThat(restTemplate.getForEntity("/avatar/previews?studentIds=", byte[].class)
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void facultyPreviewsArePagedByStudentId() {
+        ResponseEntity<byte[]> first = restTemplate.getForEntity(
+                "/avatar/previews?facultyId={id}&size=2", byte[].class, faculty.getId());
+        Assertions.assertThat(parse(first).keySet())
+                .containsExactly(previewUrl(students.get(0)), previewUrl(students.get(1)));
+        String next = first.getHeaders().getFirst(HttpHeaders.LINK);
+        Assertions.assertThat(next).endsWith("; rel=\"next\"");
+
+        ResponseEntity<byte[]> second = restTemplate.getForEntity(next.substring(1, next.indexOf('>')), byte[].class);
+        Assertions.assertThat(parse(second).keySet()).containsExactly(previewUrl(students.get(2)));
+        Assertions.assertThat(second.getHeaders().getFirst(HttpHeaders.LINK)).isNull();
+
+        Assertions.assertThat(restTemplate.getForEntity("/avatar/previews?facultyId={id}&size=201", byte[].class,
+                faculty.getId()).getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private static String previewUrl(Student student) {
+        return "/student/" + student.getId() + "/avatar/preview";
+    }
+
+    /**
+     * Разбирает ответ по Content-Length частей; ключ — Content-Location.
+     */
+    private static Map<String, byte[]> parse(ResponseEntity<byte[]> response) {
+        String boundary = response.getHeaders().getContentType().getParameter("boundary");
+        byte[] body = response.getBody();
+        Map<String, byte[]> parts = new LinkedHashMap<>();
+        int position = 0;
+        while (true) {
+            String delimiter = "--" + boundary;
+            String line = new String(body, position, delimiter.length() + 2, StandardCharsets.US_ASCII);
+            if (line.equals(delimiter + "--")) {
+                return parts;
+            }
+            Assertions.assertThat(line).isEqualTo(delimiter + "\r\n");
+            position += line.length();
+            Map<String, String> headers = new LinkedHashMap<>();
+            int end;
+            while ((end = indexOfCrlf(body, position)) != position) {
+                String header = new String(body, position, end - position, StandardCharsets.US_ASCII);
+                headers.put(header.substring(0, header.indexOf(':')), header.substring(header.indexOf(':') + 1).trim());
+                position = end + 2;
+            }
+            position += 2;
+            int length = Integer.parseInt(headers.get("Content-Length"));
+            byte[] data = new byte[length];
+            System.arraycopy(body, position, data, 0, length);
+            parts.put(headers.get("Content-Location"), data);
+            position += length + 2;
+        }
+    }
+
+    private static int indexOfCrlf(byte[] body, int from) {
+        for (int i = from; i < body.length - 1; i++) {
+            if (body[i] == '\r' && body[i + 1] == '\n') {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Нет конца строки заголовка");
+    }
+
+    private void uploadAvatar(Student student, int width) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, 80, BufferedImage.TYPE_INT_RGB), "png", png);
+        LinkedMultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("avatar", new ByteArrayResource(png.toByteArray()) {
+            @Override
+            public String getFilename() {
+                return "avatar.png";
+            }
+        });
+        ResponseEntity<String> response = restTemplate.exchange(
+                RequestEntity.post("/student/{id}/avatar", student.getId())
+                        .contentType(MediaType.MULTIPART_FORM_DATA)
+                        .body(body),
+                String.class);
+        Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private void awaitStoredPreview(Student student) throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            byte[] data = transactionTemplate.execute(status ->
+                    avatarRepository.findAvatarByStudent_Id(student.getId()).orElseThrow().getData());
+            if (data != null) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        Assertions.fail("Превью не построено");
+    }
+}
@@ -0,0 +1,132 @@
+package ru.hogwarts.school.controller;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.repository.AvatarPreviewRow;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.service.AvatarPreviewCache;
+import ru.hogwarts.school.service.AvatarService;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = AvatarTController.class)
+public class AvatarTControllerWebMvcTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AvatarRepository avatarRepository;
+
+    @SpyBean
+    private AvatarService avatarService;
+
+    @MockBean
+    private AvatarPreviewCache avatarPreviewCache;
+
+    @Test
+    public void findAvatarMetadata() throws Exception {
+        List<AvatarMetadata> avatars = List.of(
+                new AvatarMetadata(11L, 1L, "image/jpeg", 1024),
+                new AvatarMetadata(12L, 2L, "image/png", 2048)
+        );
+        when(avatarRepository.findMetadataAfter(eq(10L), any()))
+                .thenReturn(new SliceImpl<>(avatars, PageRequest.ofSize(2), true));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/avatar/metadata?afterId=10&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("""
+                        {
+                        "avatars": [
+                        {"id":11,"studentId":1,"mediaType":"image/jpeg","fileSize":1024,
+                        "previewUrl":"/student/1/avatar/preview"},
+                        {"id":12,"studentId":2,"mediaType":"image/png","fileSize":2048,
+                        "previewUrl":"/student/2/avatar/preview"}
+                        ],
+                        "nextAfterId": 12
+                        }"""));
+    }
+
+    @Test
+    public void findAvatarMetadataLastPage() throws Exception {
+        List<AvatarMetadata> avatars = List.of(new AvatarMetadata(11L, 1L, "image/jpeg", 1024));
+        when(avatarRepository.findMetadataAfter(eq(10L), any()))
+                .thenReturn(new SliceImpl<>(avatars, PageRequest.ofSize(2), false));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/avatar/metadata?afterId=10&size=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.avatars.length()").value(1))
+                .andExpect(jsonPath("$.nextAfterId").isEmpty());
+    }
+
+    @Test
+    public void findAvatarMetadataRejectsPageSizeOutOfRange() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/metadata?size=0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/metadata?size=-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/metadata?size=501"))
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(avatarRepository);
+    }
+
+    @Test
+    public void findPreviewsAsMultipart() throws Exception {
+        when(avatarPreviewCache.get(2L))
+                .thenReturn(AvatarPreviewCache.CachedPreview.of("image/png", new byte[]{2, 2}));
+        when(avatarRepository.findPreviewsByStudentIds(List.of(1L, 3L)))
+                .thenReturn(List.of(new AvatarPreviewRow(1L, "image/jpeg", new byte[]{1, 1, 1})));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/avatar/previews?studentIds=1,2,3,2"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", startsWith("multipart/mixed;boundary=")))
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertThat(body)
+                .containsSubsequence(
+                        "Content-Type: image/jpeg", "Content-Length: 3", "Content-Location: /student/1/avatar/preview",
+                        "Content-Type: image/png", "Content-Length: 2", "Content-Location: /student/2/avatar/preview")
+                .doesNotContain("/student/3/");
+    }
+
+    @Test
+    public void findFacultyPreviewsRejectsTooLargePage() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/previews?facultyId=1&size=201"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/previews?facultyId=1&size=0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void findPreviewsRejectsTooManyIds() throws Exception {
+        String ids = LongStream.rangeClosed(1, 201).mapToObj(String::valueOf).collect(Collectors.joining(","));
+        mockMvc.perform(MockMvcRequestBuilders.get("/avatar/previews?studentIds=" + ids))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,154 @@
+package ru.hogwarts.school.controller;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.hogwarts.school.SqlStatementCounter;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.EntityChangeStamps;
+
+/**
+ * Условные GET: совпавший If-None-Match дает 304 без загрузки сущностей,
+ * а любое изменение данных, в том числе прямым SQL, меняет ETag.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ConditionalGetTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityChangeStamps entityChangeStamps;
+
+    private Faculty faculty;
+    private Student student;
+
+    @BeforeEach
+    public void setUp() {
+        faculty = facultyRepository.save(new Faculty(-1, "Гриффиндор", "Красный"));
+        student = new Student(-1, "Harry", 17);
+        student.setFaculty(faculty);
+        student = studentRepository.save(student);
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+    }
+
+    @Test
+    public void studentIsNotReloadedWhileUnchanged() {
+        String url = "/student/" + student.getId();
+        ResponseEntity<String> first = restTemplate.getForEntity(url, String.class);
+        String etag = first.getHeaders().getETag();
+        Assertions.assertThat(etag).startsWith("W/");
+
+        SqlStatementCounter.reset();
+        Assertions.assertThat(getIfNoneMatch(url, etag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        SqlStatementCounter.assertAtMost(1);
+
+        Student edited = new Student(student.getId(), student.getName(), 18);
+        edited.setFaculty(new Faculty(faculty.getId(), faculty.getName(), faculty.getColor()));
+        restTemplate.put("/student", edited);
+        ResponseEntity<String> changed = getIfNoneMatch(url, etag);
+        Assertions.assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void studentTagFollowsFacultyChanges() {
+        String url = "/student/" + student.getId();
+        String etag = restTemplate.getForEntity(url, String.class).getHeaders().getETag();
+
+        faculty.setColor("Алый");
+        restTemplate.put("/faculty", faculty);
+
+        Assertions.assertThat(getIfNoneMatch(url, etag).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void studentListIsAnsweredWithStampLookupOnly() {
+        String url = "/student?age=17";
+        String etag = restTemplate.getForEntity(url, String.class).getHeaders().getETag();
+
+        SqlStatementCounter.reset();
+        Assertions.assertThat(getIfNoneMatch(url, etag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        SqlStatementCounter.assertAtMost(1);
+
+        restTemplate.postForObject("/student", new Student(-1, "Ron", 17), Student.class);
+        ResponseEntity<String> changed = getIfNoneMatch(url, etag);
+        Assertions.assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(changed.getBody()).contains("Ron");
+    }
+
+    @Test
+    public void facultyIsNotReloadedWhileUnchanged() {
+        String url = "/faculty/" + faculty.getId();
+        String etag = restTemplate.getForEntity(url, String.class).getHeaders().getETag();
+
+        Assertions.assertThat(getIfNoneMatch(url, etag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        String summaryTag = restTemplate.getForEntity("/faculty/summary", String.class).getHeaders().getETag();
+        SqlStatementCounter.reset();
+        Assertions.assertThat(getIfNoneMatch("/faculty/summary", summaryTag).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_MODIFIED);
+        SqlStatementCounter.assertAtMost(1);
+
+        faculty.setName("Слизерин");
+        restTemplate.put("/faculty", faculty);
+        Assertions.assertThat(getIfNoneMatch(url, etag).getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(getIfNoneMatch("/faculty/summary", summaryTag).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void studentListTagFollowsChangesOutsideTheService() {
+        String url = "/student?age=17";
+        String etag = restTemplate.getForEntity(url, String.class).getHeaders().getETag();
+        Assertions.assertThat(restTemplate.getForEntity(url, String.class).getHeaders().getETag()).isEqualTo(etag);
+
+        jdbcTemplate.update("update student set name = 'Гарри' where id = ?", student.getId());
+
+        ResponseEntity<String> changed = getIfNoneMatch(url, etag);
+        Assertions.assertThat(changed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(changed.getHeaders().getETag()).isNotEqualTo(etag);
+    }
+
+    @Test
+    public void studentListTagSurvivesLogCompactionAndMovesOnDelete() {
+        String url = "/student?age=17";
+        String etag = restTemplate.getForEntity(url, String.class).getHeaders().getETag();
+
+        entityChangeStamps.compact();
+
+        Assertions.assertThat(getIfNoneMatch(url, etag).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        jdbcTemplate.update("delete from avatar where student_id = ?", student.getId());
+        jdbcTemplate.update("delete from student where id = ?", student.getId());
+        Assertions.assertThat(getIfNoneMatch(url, etag).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private ResponseEntity<String> getIfNoneMatch(String url, String etag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(etag);
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -7,8 +8,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import ru.hogwarts.school.SqlStatementCounter;
+import ru.hogwarts.school.dto.CacheRegionStatistics;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
 
@@ -31,8 +40,12 @@ class FacultyControllerTest {
     @Autowired
     private StudentRepository studentRepository;
 
+    @Autowired
+    private AvatarRepository avatarRepository;
+
     @AfterEach
     private void delete() {
+        avatarRepository.deleteAll();
         studentRepository.deleteAll();
         facultyRepository.deleteAll();
     }
@@ -129,4 +142,59 @@ class FacultyControllerTest {
         facultyRepository.save(faculty3);
         String expect = "Математика";
     }
-}
\ No newline at end of file
+
+    @Test
+    void getFacultyInfoFromSecondLevelCache() {
+        Faculty faculty = new Faculty(-1, "Кеш", "Зеленый");
+        facultyRepository.save(faculty);
+        restTemplate.getForObject("http://localhost:" + port + "/faculty/" + faculty.getId(), Faculty.class);
+        restTemplate.getForObject("http://localhost:" + port + "/faculty/" + faculty.getId(), Faculty.class);
+        CacheRegionStatistics[] statistics = restTemplate.getForObject("http://localhost:" + port
+                + "/cache/statistics", CacheRegionStatistics[].class);
+        Assertions.assertThat(statistics)
+                .filteredOn(region -> region.region().equals(Faculty.class.getName()))
+                .singleElement()
+                .satisfies(region -> Assertions.assertThat(region.hitCount()).isPositive());
+    }
+
+    @Test
+    void getSummariesFromQueryCacheUntilStudentsChange() {
+        Faculty math = facultyRepository.save(new Faculty(-1, "Математика", "Синий"));
+        Faculty empty = facultyRepository.save(new Faculty(-1, "Пустой", "Белый"));
+        Student bob = new Student(-1, "Bob", 18);
+        bob.setFaculty(math);
+        Student jim = new Student(-1, "Jim", 22);
+        jim.setFaculty(math);
+        studentRepository.save(bob);
+        studentRepository.save(jim);
+        avatarRepository.save(new Avatar(null, "/tmp/bob", 1, null, bob, "image/png"));
+
+        FacultySummary[] summaries = restTemplate.getForObject("http://localhost:" + port
+                + "/faculty/summary", FacultySummary[].class);
+        Assertions.assertThat(summaries).containsExactly(
+                new FacultySummary(math.getId(), "Математика", "Синий", 2, 18, 20.0, 22, 1),
+                new FacultySummary(empty.getId(), "Пустой", "Белый", 0, null, null, null, 0));
+
+        SqlStatementCounter.reset();
+        restTemplate.getForObject("http://localhost:" + port + "/faculty/summary", FacultySummary[].class);
+        SqlStatementCounter.assertAtMost(0);
+
+        Student varg = new Student(-1, "Varg", 30);
+        varg.setFaculty(empty);
+        restTemplate.postForObject("http://localhost:" + port + "/student", varg, Student.class);
+        summaries = restTemplate.getForObject("http://localhost:" + port
+                + "/faculty/summary", FacultySummary[].class);
+        Assertions.assertThat(summaries[1].studentCount()).isEqualTo(1);
+        Assertions.assertThat(summaries[1].maxAge()).isEqualTo(30);
+    }
+
+    @Test
+    void getFacultyInfoAsCbor() throws Exception {
+        Faculty faculty = facultyRepository.save(new Faculty(-1, "Математика", "Синий"));
+        ResponseEntity<byte[]> response = restTemplate.exchange(RequestEntity
+                .get("http://localhost:" + port + "/faculty/" + faculty.getId())
+                .accept(MediaType.parseMediaType("application/cbor"))
+                .build(), byte[].class);
+        Assertions.assertThat(new CBORMapper().readValue(response.getBody(), Faculty.class)).isEqualTo(faculty);
+    }
+}
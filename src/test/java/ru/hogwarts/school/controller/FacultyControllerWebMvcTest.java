@@ -10,11 +10,14 @@ import org.springframework.boot.test.mock.mockito.SpyBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.hogwarts.school.dto.FacultySummary;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.FacultyUpdate;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.EntityChangeStamps;
 import ru.hogwarts.school.service.FacultyService;
 import ru.hogwarts.school.service.StudentService;
 
@@ -33,6 +36,9 @@ public class FacultyControllerWebMvcTest {
     @MockBean
     private FacultyRepository facultyRepository;
 
+    @MockBean
+    private EntityChangeStamps entityChangeStamps;
+
     @SpyBean
     private FacultyService facultyService;
     @InjectMocks
@@ -106,6 +112,31 @@ public class FacultyControllerWebMvcTest {
                 .andExpect(jsonPath("$.color").value(newColor));
     }
 
+    @Test
+    public void patchFaculty() throws Exception {
+        JSONObject patch = new JSONObject();
+        patch.put("color", "Yellow");
+
+        when(facultyRepository.patch(eq(1L), isNull(), eq("Yellow"), eq(5L)))
+                .thenReturn(Optional.of(new FacultyUpdate(6L)));
+        when(facultyRepository.patch(eq(1L), isNull(), eq("Yellow"), eq(4L)))
+                .thenReturn(Optional.of(new FacultyUpdate(null)));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/faculty/1")
+                        .header("If-Match", "W/\"5\"")
+                        .content(patch.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "W/\"6\""));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/faculty/1")
+                        .header("If-Match", "W/\"4\"")
+                        .content(patch.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+    }
+
     @Test
     public void deleteFaculty() throws Exception {
         long id = 1;
@@ -182,4 +213,30 @@ public class FacultyControllerWebMvcTest {
                 .andExpect(jsonPath("$.name").value(name))
                 .andExpect(jsonPath("$.color").value(color));
     }
+
+    @Test
+    public void getMaxLengthNameOfFaculty() throws Exception {
+        when(facultyRepository.findMaxLengthName()).thenReturn(Optional.of("Математика"));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/faculty/maxLengthName"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("Математика"));
+    }
+
+    @Test
+    public void getSummaries() throws Exception {
+        when(facultyRepository.findSummaries()).thenReturn(List.of(
+                new FacultySummary(1, "Математика", "Синий", 4, 18, 20.5, 23, 3),
+                new FacultySummary(2, "Химия", "Синий", 0, null, null, null, 0)));
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .get("/faculty/summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].studentCount").value(4))
+                .andExpect(jsonPath("$[0].avgAge").value(20.5))
+                .andExpect(jsonPath("$[0].avatarCoverage").value(0.75))
+                .andExpect(jsonPath("$[1].minAge").isEmpty())
+                .andExpect(jsonPath("$[1].avatarCoverage").value(0.0));
+    }
 }
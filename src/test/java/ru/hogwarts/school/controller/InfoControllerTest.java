@@ -0,0 +1,91 @@
+package ru.hogwarts.school.controller;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import ru.hogwarts.school.dto.SumReport;
+import ru.hogwarts.school.dto.SumResult;
+import ru.hogwarts.school.logging.RequestIdFilter;
+import ru.hogwarts.school.service.SumStrategy;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class InfoControllerTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void getSumWithDefaultStrategy() {
+        SumReport report = restTemplate
+                .getForObject("http://localhost:" + port + "/port/sum", SumReport.class);
+        Assertions.assertThat(report.n()).isEqualTo(1_000_000);
+        Assertions.assertThat(report.parallelism()).isPositive();
+        Assertions.assertThat(report.results())
+                .extracting(SumResult::strategy)
+                .containsExactly(SumStrategy.CLOSED_FORM);
+        Assertions.assertThat(report.results())
+                .extracting(SumResult::sum)
+                .containsOnly(500_000_500_000L);
+    }
+
+    @Test
+    void getSumWithAllStrategies() {
+        SumReport report = restTemplate
+                .getForObject("http://localhost:" + port + "/port/sum?strategy=sequential&strategy=parallel-stream"
+                        + "&strategy=fork-join&strategy=closed-form", SumReport.class);
+        Assertions.assertThat(report.results())
+                .extracting(SumResult::strategy)
+                .containsExactly(SumStrategy.values());
+        Assertions.assertThat(report.results())
+                .extracting(SumResult::sum)
+                .containsOnly(500_000_500_000L);
+    }
+
+    @Test
+    void getSumWithSelectedStrategy() {
+        SumReport report = restTemplate
+                .getForObject("http://localhost:" + port + "/port/sum?n=7&strategy=fork-join&strategy=closed_form",
+                        SumReport.class);
+        Assertions.assertThat(report.results())
+                .extracting(SumResult::strategy)
+                .containsExactly(SumStrategy.FORK_JOIN, SumStrategy.CLOSED_FORM);
+        Assertions.assertThat(report.results())
+                .extracting(SumResult::sum)
+                .containsOnly(28L);
+    }
+
+    @Test
+    void getSumRejectsBadArguments() {
+        ResponseEntity<String> unknown = restTemplate
+                .getForEntity("http://localhost:" + port + "/port/sum?strategy=magic", String.class);
+        ResponseEntity<String> empty = restTemplate
+                .getForEntity("http://localhost:" + port + "/port/sum?n=0", String.class);
+        Assertions.assertThat(unknown.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        Assertions.assertThat(empty.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void requestIdIsEchoedOrGenerated() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(RequestIdFilter.HEADER, "client-42");
+        ResponseEntity<String> echoed = restTemplate.exchange("http://localhost:" + port + "/port",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        headers.set(RequestIdFilter.HEADER, "bad id <forged>");
+        ResponseEntity<String> replaced = restTemplate.exchange("http://localhost:" + port + "/port",
+                HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        Assertions.assertThat(echoed.getHeaders().getFirst(RequestIdFilter.HEADER)).isEqualTo("client-42");
+        Assertions.assertThat(replaced.getHeaders().getFirst(RequestIdFilter.HEADER)).matches("[0-9a-f]{1,16}");
+    }
+}
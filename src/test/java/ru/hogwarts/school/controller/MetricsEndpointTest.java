@@ -0,0 +1,49 @@
+package ru.hogwarts.school.controller;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.repository.FacultyRepository;
+
+/**
+ * Эндпоинт Prometheus отдает гистограммы задержек по эндпоинтам и методам репозиториев,
+ * а также метрики пула соединений.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability
+class MetricsEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @AfterEach
+    public void cleanUp() {
+        facultyRepository.deleteAll();
+    }
+
+    @Test
+    public void prometheusScrapeContainsLatencyHistograms() {
+        Faculty faculty = facultyRepository.save(new Faculty(-1, "Когтевран", "Синий"));
+        restTemplate.getForObject("/faculty/" + faculty.getId(), String.class);
+
+        String scrape = restTemplate.getForObject("/actuator/prometheus", String.class);
+
+        Assertions.assertThat(scrape)
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"/faculty/{id}\"")
+                .contains("spring_data_repository_invocations_seconds_bucket{")
+                .contains("repository=\"FacultyRepository\"")
+                .contains("hikaricp_connections_acquire_seconds_bucket{")
+                .contains("hikaricp_connections_usage_seconds_bucket{")
+                .contains("hikaricp_connections_pending{")
+                .contains("application=\"hogwarts-school\"");
+    }
+}
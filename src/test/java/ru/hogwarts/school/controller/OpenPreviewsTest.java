@@ -0,0 +1,39 @@
+package ru.hogwarts.school.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.hogwarts.school.service.AvatarPreviewCache;
+
+import java.util.List;
+
+class OpenPreviewsTest {
+
+    private final AvatarPreviewCache cache = new AvatarPreviewCache(DataSize.ofBytes(1024), DataSize.ofBytes(256),
+            DataSize.ofBytes(64), new SimpleMeterRegistry());
+
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void unwrittenPreviewIsReleasedWhenRequestCompletes() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        cache.put(1, cache.stamp(), "image/png", new byte[100]);
+        OpenPreviews.register(List.of(cache.get(1)));
+        cache.invalidate(1);
+        Assertions.assertThat(cache.residentBytes()).isEqualTo(100);
+
+        new OpenPreviews.ReleaseInterceptor().afterCompletion(request, new MockHttpServletResponse(), null, null);
+
+        Assertions.assertThat(cache.residentBytes()).isZero();
+    }
+}
@@ -0,0 +1,135 @@
+package ru.hogwarts.school.controller;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.ResponseEntity;
+import ru.hogwarts.school.SqlStatementCounter;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.StudentStatistics;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * PATCH изменяет строку одним UPDATE и при этом сбрасывает кеши, метки и статистику,
+ * которые обычно обновляются событиями Hibernate.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PatchUpdateTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private StudentStatistics studentStatistics;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private Faculty gryffindor;
+    private Faculty slytherin;
+    private Student student;
+
+    @BeforeEach
+    public void setUp() {
+        gryffindor = facultyRepository.save(new Faculty(-1, "Гриффиндор", "Красный"));
+        slytherin = facultyRepository.save(new Faculty(-1, "Слизерин", "Зеленый"));
+        student = new Student(-1, "Harry", 17);
+        student.setFaculty(gryffindor);
+        student = studentRepository.save(student);
+        studentStatistics.reconcile();
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+    }
+
+    @Test
+    public void studentPatchIsOneStatement() throws Exception {
+        String url = "/student/" + student.getId();
+        restTemplate.getForEntity(url, Student.class);
+
+        SqlStatementCounter.reset();
+        HttpResponse<String> response = patch(url, "{\"age\": 18, \"facultyId\": " + slytherin.getId() + "}", null);
+        SqlStatementCounter.assertAtMost(1);
+        Assertions.assertThat(response.statusCode()).isEqualTo(204);
+
+        ResponseEntity<Student> changed = restTemplate.getForEntity(url, Student.class);
+        Assertions.assertThat(changed.getBody().getName()).isEqualTo("Harry");
+        Assertions.assertThat(changed.getBody().getAge()).isEqualTo(18);
+        Assertions.assertThat(changed.getBody().getFaculty().getName()).isEqualTo("Слизерин");
+        Assertions.assertThat(changed.getHeaders().getETag()).isEqualTo(response.headers().firstValue("ETag").get());
+
+        Assertions.assertThat(restTemplate.getForObject("/student/count?facultyId=" + gryffindor.getId(), Integer.class))
+                .isZero();
+        Assertions.assertThat(restTemplate.getForObject("/student/count?facultyId=" + slytherin.getId(), Integer.class))
+                .isEqualTo(1);
+        Assertions.assertThat(restTemplate.getForObject("/student/avgAge", Integer.class)).isEqualTo(18);
+    }
+
+    @Test
+    public void stalePatchIsRejected() throws Exception {
+        String url = "/student/" + student.getId();
+        String etag = restTemplate.getForEntity(url, String.class).getHeaders().getETag();
+
+        HttpResponse<String> first = patch(url, "{\"name\": \"Harry Potter\"}", etag);
+        Assertions.assertThat(first.statusCode()).isEqualTo(204);
+        Assertions.assertThat(patch(url, "{\"name\": \"Harry James Potter\"}", etag).statusCode()).isEqualTo(409);
+        Assertions.assertThat(patch(url, "{\"name\": \"Harry James Potter\"}",
+                first.headers().firstValue("ETag").get()).statusCode()).isEqualTo(204);
+
+        Assertions.assertThat(patch("/student/" + (student.getId() + 1000), "{\"age\": 20}", null).statusCode())
+                .isEqualTo(404);
+        Assertions.assertThat(patch(url, "{\"facultyId\": -5}", null).statusCode()).isEqualTo(400);
+    }
+
+    @Test
+    public void facultyPatchInvalidatesCachedQueries() throws Exception {
+        String facultyUrl = "/faculty/" + gryffindor.getId();
+        Assertions.assertThat(restTemplate.getForObject("/faculty?color=Красный", Faculty[].class)).hasSize(1);
+        restTemplate.getForObject("/faculty/summary", String.class);
+        String studentTag = restTemplate.getForEntity("/student/" + student.getId(), String.class)
+                .getHeaders().getETag();
+
+        HttpResponse<String> response = patch(facultyUrl, "{\"color\": \"Алый\"}", null);
+        Assertions.assertThat(response.statusCode()).isEqualTo(204);
+
+        Assertions.assertThat(restTemplate.getForObject("/faculty?color=Красный", Faculty[].class)).isEmpty();
+        Assertions.assertThat(restTemplate.getForObject(facultyUrl, Faculty.class).getColor()).isEqualTo("Алый");
+        Assertions.assertThat(restTemplate.getForObject("/faculty/summary", String.class)).contains("Алый");
+        Assertions.assertThat(restTemplate.getForEntity("/student/" + student.getId(), String.class)
+                .getHeaders().getETag()).isNotEqualTo(studentTag);
+    }
+
+    private HttpResponse<String> patch(String path, String body, String ifMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(body));
+        if (ifMatch != null) {
+            request.header("If-Match", ifMatch);
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
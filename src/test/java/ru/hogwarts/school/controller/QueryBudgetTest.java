@@ -0,0 +1,120 @@
+package ru.hogwarts.school.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.EntityManagerFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import ru.hogwarts.school.SqlStatementCounter;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repository.AvatarRepository;
+import ru.hogwarts.school.repository.FacultyRepository;
+import ru.hogwarts.school.repository.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Проверяет, что эндпоинты укладываются в бюджет SQL-запросов и не грузят факультеты по одному.
+ * Перед каждым запросом кэш второго уровня очищается, чтобы он не скрывал N+1.
+ * Списки с ETag дополнительно читают метку таблиц: один запрос, не зависящий от размера списка.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class QueryBudgetTest {
+
+    private static final int STAMP_LOOKUP = 1;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private AvatarRepository avatarRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Student> students = new ArrayList<>();
+    private Faculty faculty;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < 3; i++) {
+            Faculty saved = facultyRepository.save(new Faculty(-1, "Факультет " + i, "Цвет " + i));
+            for (int j = 0; j < 2; j++) {
+                Student student = new Student(-1, "Student " + i + j, 20);
+                student.setFaculty(saved);
+                students.add(studentRepository.save(student));
+            }
+            faculty = saved;
+        }
+        for (Student student : students) {
+            avatarRepository.save(new Avatar(null, "/tmp/" + student.getId(), 1, null, student, "image/png"));
+        }
+    }
+
+    @AfterEach
+    public void cleanUp() {
+        avatarRepository.deleteAll();
+        studentRepository.deleteAll();
+        facultyRepository.deleteAll();
+    }
+
+    @Test
+    public void findByAgeLoadsFacultiesInOneQuery() {
+        JsonNode body = getWithBudget("/student?age=20", 1 + STAMP_LOOKUP);
+        Assertions.assertThat(body).hasSize(6);
+        Assertions.assertThat(body.findValuesAsText("color")).hasSize(6);
+    }
+
+    @Test
+    public void findByAgeBetweenLoadsFacultiesInOneQuery() {
+        JsonNode body = getWithBudget("/student/findByAgeBetween?min=10&max=30", 1 + STAMP_LOOKUP);
+        Assertions.assertThat(body.findValuesAsText("color")).hasSize(6);
+    }
+
+    @Test
+    public void studentsOfFacultyLoadFacultyInOneQuery() {
+        JsonNode body = getWithBudget("/student/studentsOfFaculty/" + faculty.getId(), 1 + STAMP_LOOKUP);
+        Assertions.assertThat(body.findValuesAsText("name")).contains(faculty.getName());
+    }
+
+    @Test
+    public void lastFiveLoadFacultiesInOneQuery() {
+        JsonNode body = getWithBudget("/student/lastFive", 2 + STAMP_LOOKUP);
+        Assertions.assertThat(body.findValuesAsText("color")).hasSize(5);
+    }
+
+    @Test
+    public void studentAndFacultyAreLoadedTogether() {
+        Student student = students.get(0);
+        JsonNode body = getWithBudget("/student/" + student.getId(), 1);
+        Assertions.assertThat(body.path("faculty").path("name").asText()).isEqualTo("Факультет 0");
+        getWithBudget("/student/getFacultyOfStudent/" + student.getId(), 1);
+    }
+
+    @Test
+    public void avatarPageLoadsStudentsAndFacultiesTogether() {
+        JsonNode body = getWithBudget("/avatar?page=1&size=10", 2);
+        Assertions.assertThat(body.findValuesAsText("color")).hasSize(6);
+    }
+
+    private JsonNode getWithBudget(String url, int budget) {
+        entityManagerFactory.getCache().evictAll();
+        SqlStatementCounter.reset();
+        JsonNode body = restTemplate.getForObject(url, JsonNode.class);
+        SqlStatementCounter.assertAtMost(budget);
+        return body;
+    }
+}
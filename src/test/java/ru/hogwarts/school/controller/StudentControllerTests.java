@@ -1,5 +1,7 @@
 package ru.hogwarts.school.controller;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -7,18 +9,41 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.LinkedMultiValueMap;
+import ru.hogwarts.school.SqlStatementCounter;
+import ru.hogwarts.school.dto.AvatarMetadataPage;
+import ru.hogwarts.school.dto.StudentBatchResult;
+import ru.hogwarts.school.dto.TaskExecutorStatistics;
+import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.FacultyRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.service.StudentStatistics;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 class StudentControllerTests {
@@ -41,6 +66,12 @@ class StudentControllerTests {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private StudentStatistics studentStatistics;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @AfterEach
     public void cleanUp() {
         avatarRepository.deleteAll();
@@ -170,7 +201,7 @@ class StudentControllerTests {
     }
 
     @Test
-    public void downloadAvatar() {
+    public void downloadAvatar() throws InterruptedException {
         Student bob = new Student(-1, "Bob", 34);
         studentRepository.save(bob);
         LinkedMultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
@@ -186,7 +217,12 @@ class StudentControllerTests {
         ResponseEntity<byte[]> response = restTemplate.exchange(
                 request,
                 byte[].class);
+        for (int attempt = 0; attempt < 50 && response.getStatusCode() == HttpStatus.ACCEPTED; attempt++) {
+            Thread.sleep(100);
+            response = restTemplate.exchange(request, byte[].class);
+        }
         Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(response.getBody()).isNotEmpty();
     }
 
     @Test
@@ -238,9 +274,369 @@ class StudentControllerTests {
         studentRepository.save(artem);
         studentRepository.save(andrey);
         studentRepository.save(abber);
+        studentRepository.save(new Student(-1, "A-Jay", 22));
         RequestEntity<Void> requestEntity = RequestEntity.get("/student/withA").build();
-        ResponseEntity<List> responseEntity = restTemplate.exchange(requestEntity, List.class);
+        ResponseEntity<List<String>> responseEntity = restTemplate.exchange(requestEntity,
+                new ParameterizedTypeReference<>() { });
         List<String> result = responseEntity.getBody();
-        Assertions.assertThat(result.get(0)).isEqualTo("ABBER");
+        // Дефис раньше букв по кодовым точкам, а collation вроде en_US его игнорирует
+        Assertions.assertThat(result)
+                .containsSubsequence("A-JAY", "ABBER", "ANDREY", "ARTEM")
+                .isSortedAccordingTo(Comparator.naturalOrder());
+    }
+
+    @Test
+    public void statisticsFollowCommittedChanges() {
+        studentStatistics.reconcile();
+        Faculty faculty = new Faculty(-1, "Математика", "Синий");
+        facultyRepository.save(faculty);
+        Student bob = new Student(-1, "Bob", 20);
+        bob.setFaculty(faculty);
+        bob = restTemplate.postForObject("/student", bob, Student.class);
+        Student jim = restTemplate.postForObject("/student", new Student(-1, "Jim", 30), Student.class);
+        restTemplate.put("/student", new Student(jim.getId(), "Jim", 40));
+        Assertions.assertThat(restTemplate.getForObject("/student/count", Integer.class)).isEqualTo(2);
+        Assertions.assertThat(restTemplate.getForObject("/student/avgAge", Integer.class)).isEqualTo(30);
+        Assertions.assertThat(restTemplate.getForObject("/student/count?facultyId=" + faculty.getId(),
+                Integer.class)).isEqualTo(1);
+
+        restTemplate.delete("/student/" + bob.getId());
+        Assertions.assertThat(restTemplate.getForObject("/student/count", Integer.class)).isEqualTo(1);
+        Assertions.assertThat(restTemplate.getForObject("/student/avgAge", Integer.class)).isEqualTo(40);
+        Assertions.assertThat(restTemplate.getForObject("/student/count?facultyId=" + faculty.getId(),
+                Integer.class)).isEqualTo(0);
+    }
+
+    @Test
+    public void downloadAvatarFileWithRangeAndConditionalGet() throws Exception {
+        Student bob = new Student(-1, "Bob", 34);
+        studentRepository.save(bob);
+        LinkedMultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        ClassPathResource kosmo = new ClassPathResource("kosmo.jpg");
+        body.add("avatar", kosmo);
+        restTemplate.exchange(RequestEntity.post("/student/{id}/avatar", bob.getId())
+                        .contentType(MediaType.MULTIPART_FORM_DATA)
+                        .body(body),
+                String.class);
+        byte[] original = kosmo.getInputStream().readAllBytes();
+
+        ResponseEntity<byte[]> full = restTemplate.exchange(
+                RequestEntity.get("/student/{id}/avatar", bob.getId()).build(), byte[].class);
+        Assertions.assertThat(full.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(full.getBody()).isEqualTo(original);
+        String etag = full.getHeaders().getETag();
+        Assertions.assertThat(etag).isNotNull();
+        Assertions.assertThat(full.getHeaders().getCacheControl()).contains("no-cache").doesNotContain("max-age");
+        Assertions.assertThat(full.getHeaders().getLastModified()).isPositive();
+
+        ResponseEntity<byte[]> notModifiedSince = restTemplate.exchange(
+                RequestEntity.get("/student/{id}/avatar", bob.getId())
+                        .ifModifiedSince(full.getHeaders().getLastModified()).build(), byte[].class);
+        Assertions.assertThat(notModifiedSince.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        String hash = etag.replace("\"", "");
+        ResponseEntity<byte[]> versioned = restTemplate.exchange(
+                RequestEntity.get("/student/{id}/avatar?v={hash}", bob.getId(), hash).build(), byte[].class);
+        Assertions.assertThat(versioned.getHeaders().getCacheControl()).contains("max-age", "immutable");
+
+        ResponseEntity<byte[]> notModified = restTemplate.exchange(
+                RequestEntity.get("/student/{id}/avatar", bob.getId()).ifNoneMatch(etag).build(), byte[].class);
+        Assertions.assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        Assertions.assertThat(notModified.getBody()).isNull();
+
+        ResponseEntity<byte[]> partial = restTemplate.exchange(
+                RequestEntity.get("/student/{id}/avatar", bob.getId()).header(HttpHeaders.RANGE, "bytes=10-19").build(),
+                byte[].class);
+        Assertions.assertThat(partial.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+        Assertions.assertThat(partial.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes 10-19/" + original.length);
+        Assertions.assertThat(partial.getBody()).isEqualTo(Arrays.copyOfRange(original, 10, 20));
+    }
+
+    @Test
+    public void findAvatarMetadata() {
+        Student bob = new Student(-1, "Bob", 34);
+        studentRepository.save(bob);
+        LinkedMultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("avatar", new ClassPathResource("kosmo.jpg"));
+        restTemplate.exchange(RequestEntity.post("/student/{id}/avatar", bob.getId())
+                        .contentType(MediaType.MULTIPART_FORM_DATA)
+                        .body(body),
+                String.class);
+        AvatarMetadataPage page = restTemplate.getForObject("/avatar/metadata?size=10", AvatarMetadataPage.class);
+        Assertions.assertThat(page.avatars())
+                .singleElement()
+                .satisfies(avatar -> Assertions.assertThat(avatar.studentId()).isEqualTo(bob.getId()));
+        Assertions.assertThat(page.nextAfterId()).isNull();
+    }
+
+    @Test
+    public void identicalAvatarsAreStoredOnce() throws Exception {
+        Student bob = studentRepository.save(new Student(-1, "Bob", 34));
+        Student jim = studentRepository.save(new Student(-1, "Jim", 35));
+        uploadAvatar(bob, new ClassPathResource("kosmo.jpg"));
+        uploadAvatar(jim, new ClassPathResource("kosmo.jpg"));
+        Avatar bobAvatar = transactionTemplate.execute(status ->
+                avatarRepository.findAvatarByStudent_Id(bob.getId()).orElseThrow());
+        Avatar jimAvatar = transactionTemplate.execute(status ->
+                avatarRepository.findAvatarByStudent_Id(jim.getId()).orElseThrow());
+        Assertions.assertThat(bobAvatar.getContentHash()).isEqualTo(jimAvatar.getContentHash());
+        Assertions.assertThat(bobAvatar.getFilePath()).isEqualTo(jimAvatar.getFilePath());
+        Path sharedFile = Path.of(bobAvatar.getFilePath());
+        Assertions.assertThat(sharedFile).exists();
+
+        uploadAvatar(bob, namedResource(new byte[]{1, 2, 3}, "bob.jpg"));
+        Assertions.assertThat(sharedFile).exists();
+
+        uploadAvatar(jim, namedResource(new byte[]{4, 5, 6}, "jim.jpg"));
+        Assertions.assertThat(sharedFile).doesNotExist();
+    }
+
+    @Test
+    public void avatarPreviewWidthsAreBuiltOnceAndStored() throws Exception {
+        Student bob = studentRepository.save(new Student(-1, "Bob", 34));
+        uploadAvatar(bob, new ClassPathResource("kosmo.jpg"));
+        Avatar avatar = transactionTemplate.execute(status ->
+                avatarRepository.findAvatarByStudent_Id(bob.getId()).orElseThrow());
+
+        ResponseEntity<byte[]> small = restTemplate.getForEntity("/student/{id}/avatar/preview?w=48", byte[].class, bob.getId());
+        Assertions.assertThat(small.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(small.getHeaders().getContentType()).isEqualTo(MediaType.IMAGE_JPEG);
+        Assertions.assertThat(ImageIO.read(new ByteArrayInputStream(small.getBody())).getWidth()).isEqualTo(48);
+        Path stored = Path.of(avatar.getFilePath()).resolveSibling(avatar.getContentHash() + ".w48.jpg");
+        Assertions.assertThat(stored).exists();
+        Assertions.assertThat(Files.readAllBytes(stored)).isEqualTo(small.getBody());
+
+        Assertions.assertThat(restTemplate.getForEntity("/student/{id}/avatar/preview?w=48", byte[].class, bob.getId())
+                .getBody()).isEqualTo(small.getBody());
+        String etag = small.getHeaders().getETag();
+        Assertions.assertThat(restTemplate.exchange(RequestEntity.get("/student/{id}/avatar/preview?w=48", bob.getId())
+                .ifNoneMatch(etag).build(), byte[].class).getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        ResponseEntity<byte[]> large = restTemplate.getForEntity("/student/{id}/avatar/preview?w=256", byte[].class, bob.getId());
+        Assertions.assertThat(ImageIO.read(new ByteArrayInputStream(large.getBody())).getWidth()).isEqualTo(256);
+        Assertions.assertThat(large.getHeaders().getETag()).isNotEqualTo(etag);
+
+        Assertions.assertThat(restTemplate.getForEntity("/student/{id}/avatar/preview?w=77", byte[].class, bob.getId())
+                .getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    public void narrowAvatarIsNotUpscaled() throws Exception {
+        Student bob = studentRepository.save(new Student(-1, "Bob", 34));
+        BufferedImage narrow = new BufferedImage(60, 30, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(narrow, "png", png);
+        uploadAvatar(bob, namedResource(png.toByteArray(), "narrow.png"));
+
+        ResponseEntity<byte[]> preview = restTemplate.getForEntity("/student/{id}/avatar/preview?w=256", byte[].class, bob.getId());
+        Assertions.assertThat(preview.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(ImageIO.read(new ByteArrayInputStream(preview.getBody())).getWidth()).isEqualTo(60);
+
+        byte[] stored = null;
+        for (int attempt = 0; attempt < 50 && stored == null; attempt++) {
+            stored = transactionTemplate.execute(status ->
+                    avatarRepository.findAvatarByStudent_Id(bob.getId()).orElseThrow().getData());
+            if (stored == null) {
+                Thread.sleep(100);
+            }
+        }
+        Assertions.assertThat(stored).isNotNull();
+        Assertions.assertThat(ImageIO.read(new ByteArrayInputStream(stored)).getWidth()).isEqualTo(60);
+    }
+
+    @Test
+    public void oversizedAvatarIsRejected() throws Exception {
+        Student bob = studentRepository.save(new Student(-1, "Bob", 34));
+        for (int size : new int[]{305 * 1024, 2 * 1024 * 1024}) {
+            LinkedMultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+            body.add("avatar", namedResource(new byte[size], "big.jpg"));
+            ResponseEntity<String> response = restTemplate.exchange(
+                    RequestEntity.post("/student/{id}/avatar", bob.getId())
+                            .contentType(MediaType.MULTIPART_FORM_DATA)
+                            .body(body),
+                    String.class);
+            Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+            Assertions.assertThat(response.getBody()).isEqualTo("File is too big");
+        }
+        Assertions.assertThat(avatarRepository.findAvatarByStudent_Id(bob.getId())).isEmpty();
+    }
+
+    @Test
+    public void avatarPreviewIsServedFromCacheUntilReplaced() throws Exception {
+        Student bob = studentRepository.save(new Student(-1, "Bob", 34));
+        uploadAvatar(bob, new ClassPathResource("kosmo.jpg"));
+        byte[] first = awaitPreview(bob);
+
+        SqlStatementCounter.reset();
+        Assertions.assertThat(restTemplate.getForObject("/student/{id}/avatar/preview", byte[].class, bob.getId()))
+                .isEqualTo(first);
+        SqlStatementCounter.assertAtMost(0);
+
+        BufferedImage replacement = new BufferedImage(120, 60, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(replacement, "png", png);
+        uploadAvatar(bob, namedResource(png.toByteArray(), "replacement.png"));
+        byte[] second = awaitPreview(bob);
+        Assertions.assertThat(second).isNotEqualTo(first);
+        Assertions.assertThat(ImageIO.read(new ByteArrayInputStream(second)).getHeight()).isEqualTo(50);
+    }
+
+    @Test
+    public void undecodableAvatarPreviewFailsInsteadOfRetrying() throws Exception {
+        Student bob = studentRepository.save(new Student(-1, "Bob", 34));
+        uploadAvatar(bob, namedResource(new byte[]{1, 2, 3}, "broken.jpg"));
+
+        RequestEntity<Void> request = RequestEntity.get("/student/{id}/avatar/preview", bob.getId()).build();
+        ResponseEntity<byte[]> response = restTemplate.exchange(request, byte[].class);
+        for (int attempt = 0; attempt < 50 && response.getStatusCode() == HttpStatus.ACCEPTED; attempt++) {
+            Thread.sleep(100);
+            response = restTemplate.exchange(request, byte[].class);
+        }
+        Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+
+        uploadAvatar(bob, new ClassPathResource("kosmo.jpg"));
+        Assertions.assertThat(ImageIO.read(new ByteArrayInputStream(awaitPreview(bob))).getWidth()).isEqualTo(100);
+    }
+
+    @Test
+    public void previewOfReplacedUploadIsDiscarded() {
+        Student bob = studentRepository.save(new Student(-1, "Bob", 34));
+        uploadAvatar(bob, new ClassPathResource("kosmo.jpg"));
+        Avatar avatar = transactionTemplate.execute(status ->
+                avatarRepository.findAvatarByStudent_Id(bob.getId()).orElseThrow());
+
+        Integer updated = transactionTemplate.execute(status ->
+                avatarRepository.updatePreview(avatar.getId(), "stale-hash", new byte[]{9}));
+        Assertions.assertThat(updated).isZero();
+    }
+
+    private byte[] awaitPreview(Student student) throws InterruptedException {
+        RequestEntity<Void> request = RequestEntity.get("/student/{id}/avatar/preview", student.getId()).build();
+        ResponseEntity<byte[]> response = restTemplate.exchange(request, byte[].class);
+        for (int attempt = 0; attempt < 50 && response.getStatusCode() == HttpStatus.ACCEPTED; attempt++) {
+            Thread.sleep(100);
+            response = restTemplate.exchange(request, byte[].class);
+        }
+        Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        return response.getBody();
+    }
+
+    private void uploadAvatar(Student student, Resource resource) {
+        LinkedMultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
+        body.add("avatar", resource);
+        ResponseEntity<String> response = restTemplate.exchange(
+                RequestEntity.post("/student/{id}/avatar", student.getId())
+                        .contentType(MediaType.MULTIPART_FORM_DATA)
+                        .body(body),
+                String.class);
+        Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private Resource namedResource(byte[] content, String fileName) {
+        return new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return fileName;
+            }
+        };
+    }
+
+    @Test
+    public void createAndEditStudentsInBatch() {
+        Faculty faculty = facultyRepository.save(new Faculty(-1, "Математика", "Синий"));
+        Student bob = new Student(-1, "Bob", 20);
+        bob.setFaculty(faculty);
+        List<Student> students = List.of(bob, new Student(-1, "Jim", 21), new Student(-1, "Varg", 22));
+        StudentBatchResult[] created = restTemplate.postForObject("/student/batch", students,
+                StudentBatchResult[].class);
+        Assertions.assertThat(created)
+                .extracting(StudentBatchResult::status)
+                .containsOnly(StudentBatchResult.Status.CREATED);
+        Assertions.assertThat(studentRepository.count()).isEqualTo(3);
+
+        List<Student> edited = List.of(
+                new Student(created[0].id(), "Bob", 30),
+                new Student(Long.MAX_VALUE, "Ghost", 40));
+        ResponseEntity<StudentBatchResult[]> response = restTemplate.exchange(
+                RequestEntity.put("/student/batch").body(edited), StudentBatchResult[].class);
+        Assertions.assertThat(response.getBody())
+                .extracting(StudentBatchResult::status)
+                .containsExactly(StudentBatchResult.Status.UPDATED, StudentBatchResult.Status.NOT_FOUND);
+        Assertions.assertThat(studentRepository.findById(created[0].id()).orElseThrow().getAge()).isEqualTo(30);
+    }
+
+    @Test
+    public void printParallelAwaitsBackgroundTasks() {
+        for (int i = 0; i < 6; i++) {
+            studentRepository.save(new Student(-1, "Student " + i, 20 + i));
+        }
+        TaskExecutorStatistics before = restTemplate.getForObject("/tasks/statistics", TaskExecutorStatistics.class);
+
+        ResponseEntity<Void> response = restTemplate.getForEntity("/student/print-parallel?await=true", Void.class);
+
+        TaskExecutorStatistics after = restTemplate.getForObject("/tasks/statistics", TaskExecutorStatistics.class);
+        Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(after.mode()).isEqualTo("platform");
+        Assertions.assertThat(after.completedCount() - before.completedCount()).isEqualTo(2);
+        Assertions.assertThat(after.activeThreads()).isZero();
+    }
+
+    @Test
+    public void printEndpointsDeliverEachStudentOnceUnderLoad() throws Exception {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            names.add(studentRepository.save(new Student(-1, "Student " + i, 20 + i)).getName());
+        }
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<List<String>>> parallel = new ArrayList<>();
+            List<Future<List<String>>> synchronizedPrints = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                parallel.add(clients.submit(() -> Arrays.asList(
+                        restTemplate.getForObject("/student/print-parallel?await=true", String[].class))));
+                synchronizedPrints.add(clients.submit(() -> Arrays.asList(
+                        restTemplate.getForObject("/student/print-synchronized?await=true", String[].class))));
+            }
+            for (Future<List<String>> response : parallel) {
+                Assertions.assertThat(response.get(30, TimeUnit.SECONDS))
+                        .containsExactlyInAnyOrderElementsOf(names);
+            }
+            for (Future<List<String>> response : synchronizedPrints) {
+                Assertions.assertThat(response.get(30, TimeUnit.SECONDS))
+                        .containsExactlyElementsOf(names);
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    public void negotiateSmileAndCbor() throws Exception {
+        Faculty faculty = facultyRepository.save(new Faculty(-1, "Математика", "Синий"));
+        Student bob = new Student(-1, "Bob", 20);
+        bob.setFaculty(faculty);
+        studentRepository.save(bob);
+
+        ResponseEntity<byte[]> smile = restTemplate.exchange(RequestEntity.get("/student/findByAgeBetween?min=10&max=30")
+                .accept(MediaType.parseMediaType("application/x-jackson-smile"))
+                .build(), byte[].class);
+        Assertions.assertThat(smile.getHeaders().getContentType().toString()).isEqualTo("application/x-jackson-smile");
+        Student[] students = new SmileMapper().readValue(smile.getBody(), Student[].class);
+        Assertions.assertThat(students).containsExactly(bob);
+        Assertions.assertThat(students[0].getFaculty()).isEqualTo(faculty);
+
+        CBORMapper cborMapper = new CBORMapper();
+        Student jim = new Student(0, "Jim", 21);
+        ResponseEntity<byte[]> cbor = restTemplate.exchange(RequestEntity.post("/student")
+                .contentType(MediaType.parseMediaType("application/cbor"))
+                .accept(MediaType.parseMediaType("application/cbor"))
+                .body(cborMapper.writeValueAsBytes(jim)), byte[].class);
+        Student created = cborMapper.readValue(cbor.getBody(), Student.class);
+        Assertions.assertThat(created.getName()).isEqualTo("Jim");
+        Assertions.assertThat(studentRepository.findById(created.getId())).isPresent();
+
+        ResponseEntity<String> json = restTemplate.getForEntity("/student/" + bob.getId(), String.class);
+        Assertions.assertThat(json.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
     }
 }
@@ -13,12 +13,25 @@ import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.hogwarts.school.controller.StudentController;
+import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repository.AvatarRepository;
 import ru.hogwarts.school.repository.StudentRepository;
+import ru.hogwarts.school.repository.StudentUpdate;
+import ru.hogwarts.school.service.EntityChangeStamps;
+import ru.hogwarts.school.service.AvatarPreviewService;
+import ru.hogwarts.school.service.AvatarDerivativeService;
+import ru.hogwarts.school.service.AvatarPreviewCache;
+import ru.hogwarts.school.service.AvatarStorage;
+import ru.hogwarts.school.service.BackgroundTaskExecutor;
+import ru.hogwarts.school.service.StoredAvatar;
+import ru.hogwarts.school.service.StudentBatchService;
+import ru.hogwarts.school.service.StudentExportService;
 import ru.hogwarts.school.service.StudentService;
+import ru.hogwarts.school.service.StudentStatistics;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -26,9 +39,11 @@ import java.nio.file.Paths;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = StudentController.class)
@@ -44,6 +59,33 @@ public class StudentControllerWebMvcTest {
 
     @SpyBean
     private StudentService studentService;
+
+    @SpyBean
+    private StudentExportService studentExportService;
+
+    @MockBean
+    private StudentStatistics studentStatistics;
+
+    @MockBean
+    private AvatarPreviewService avatarPreviewService;
+
+    @MockBean
+    private AvatarStorage avatarStorage;
+
+    @MockBean
+    private AvatarDerivativeService avatarDerivativeService;
+
+    @MockBean
+    private AvatarPreviewCache avatarPreviewCache;
+
+    @MockBean
+    private StudentBatchService studentBatchService;
+
+    @MockBean
+    private BackgroundTaskExecutor backgroundTaskExecutor;
+
+    @MockBean
+    private EntityChangeStamps entityChangeStamps;
     @InjectMocks
     private StudentController studentController;
 
@@ -115,6 +157,43 @@ public class StudentControllerWebMvcTest {
                 .andExpect(jsonPath("$.age").value(newAge));
     }
 
+    @Test
+    public void testPatchStudent() throws Exception {
+        JSONObject patch = new JSONObject();
+        patch.put("age", 41);
+
+        when(studentRepository.patch(eq(1L), isNull(), eq(41), isNull(), eq(3L)))
+                .thenReturn(Optional.of(new StudentUpdate(40, 2L, 41, 2L, 4L, 7L)));
+        when(studentRepository.patch(eq(2L), isNull(), eq(41), isNull(), eq(3L)))
+                .thenReturn(Optional.of(new StudentUpdate(40, 2L, null, null, null, null)));
+        when(studentRepository.patch(eq(3L), isNull(), eq(41), isNull(), isNull()))
+                .thenReturn(Optional.empty());
+
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/student/1")
+                        .header("If-Match", "W/\"3.7\"")
+                        .content(patch.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string("ETag", "W/\"4.7\""));
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/student/2")
+                        .header("If-Match", "W/\"3.7\"")
+                        .content(patch.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isConflict());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/student/3")
+                        .content(patch.toString())
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders
+                        .patch("/student/1")
+                        .content("{}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testDeleteStudent() throws Exception {
         long id = 1;
@@ -215,6 +294,8 @@ public class StudentControllerWebMvcTest {
         Student bob = new Student(1, "Bob", 37);
 
         when(studentRepository.findById(any())).thenReturn(Optional.of(bob));
+        when(avatarStorage.store(any(), any()))
+                .thenReturn(new StoredAvatar("abcd", Paths.get("avatars/ab/cd/abcd.jpg"), 1024));
 
         MockMultipartFile mockMultipartFile = new MockMultipartFile(
                 "avatar",
@@ -225,13 +306,21 @@ public class StudentControllerWebMvcTest {
                 .file(mockMultipartFile)).andExpect(status().isOk());
     }
 
+    @Test
+    public void failedAvatarPreviewIsTerminal() throws Exception {
+        Avatar avatar = new Avatar(1L, "avatars/ab/cd/abcd.jpg", 3, null, new Student(1, "Bob", 37), "image/jpeg");
+        avatar.setPreviewFailed(true);
+        when(avatarRepository.findAvatarByStudent_Id(1L)).thenReturn(Optional.of(avatar));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/student/1/avatar/preview"))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(header().doesNotExist("Retry-After"));
+    }
+
     @Test
     public void getAllStudentStartWithA() throws Exception {
-        Student artem = new Student(1, "Artem", 34);
-        Student andrey = new Student(2, "Andrey", 34);
-        Student abber = new Student(3, "Abber", 22);
-        List<Student> students = List.of(artem, andrey, abber);
-        when(studentRepository.findAll()).thenReturn(students);
+        when(studentRepository.findUpperCaseNamesStartingWith("A"))
+                .thenReturn(List.of("ABBER", "ANDREY", "ARTEM"));
         mockMvc.perform(MockMvcRequestBuilders.get("/student/withA"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
@@ -244,4 +333,60 @@ public class StudentControllerWebMvcTest {
                         ]"""
                 ));
     }
+
+    @Test
+    public void exportStudentsCsv() throws Exception {
+        Student bob = new Student(1, "Bob", 37);
+        Student john = new Student(2, "John, Jr.", 23);
+        when(studentRepository.streamAll()).thenReturn(Stream.of(bob, john));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/student/export?format=csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(content().string("""
+                        id,name,age,faculty_id,faculty_name,faculty_color
+                        1,Bob,37,,,
+                        2,"John, Jr.",23,,,
+                        """));
+    }
+
+    @Test
+    public void exportStudentsNdjson() throws Exception {
+        Student bob = new Student(1, "Bob", 37);
+        when(studentRepository.streamAll()).thenReturn(Stream.of(bob));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/student/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("""
+                        {"id":1,"name":"Bob","age":37,"faculty":null}
+                        """));
+    }
+
+    @Test
+    public void exportEmptyStudentsNdjsonHasEmptyBody() throws Exception {
+        when(studentRepository.streamAll()).thenReturn(Stream.empty());
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/student/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void exportStudentsUnknownFormat() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/student/export?format=xlsx"))
+                .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,54 @@
+package ru.hogwarts.school.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+class LoggerSamplingFilterTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final LoggerSamplingFilter filter = new LoggerSamplingFilter();
+    private Logger sampled;
+    private Logger other;
+
+    @BeforeEach
+    public void setUp() {
+        context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.INFO);
+        sampled = context.getLogger("service.read");
+        other = context.getLogger("service");
+        filter.setLoggers("service.read, unused");
+        filter.setRate(4);
+    }
+
+    @Test
+    public void keepsEveryNthInfoEventOfListedLoggers() {
+        long kept = IntStream.range(0, 100)
+                .mapToObj(i -> filter.decide(null, sampled, Level.INFO, "read {}", new Object[]{i}, null))
+                .filter(reply -> reply == FilterReply.NEUTRAL)
+                .count();
+        Assertions.assertThat(kept).isEqualTo(25);
+    }
+
+    @Test
+    public void leavesWarningsAndOtherLoggersAlone() {
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertThat(filter.decide(null, sampled, Level.WARN, "warn", null, null))
+                    .isEqualTo(FilterReply.NEUTRAL);
+            Assertions.assertThat(filter.decide(null, other, Level.INFO, "write", null, null))
+                    .isEqualTo(FilterReply.NEUTRAL);
+        }
+    }
+
+    @Test
+    public void disabledLevelsDoNotAdvanceTheCounter() {
+        filter.decide(null, sampled, Level.DEBUG, "debug", null, null);
+        Assertions.assertThat(filter.decide(null, sampled, Level.INFO, "first", null, null))
+                .isEqualTo(FilterReply.NEUTRAL);
+    }
+}
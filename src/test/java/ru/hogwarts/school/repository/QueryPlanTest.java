@@ -0,0 +1,284 @@
+package ru.hogwarts.school.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.SqlStatementCounter;
+import ru.hogwarts.school.service.StudentStatistics;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Прогоняет EXPLAIN для SQL, который Hibernate строит для каждого метода репозиториев, на заполненной базе.
+ * Запросы, которые по смыслу читают всю таблицу (агрегаты, выгрузка, страница без сортировки), помечены
+ * как fullScan; для остальных последовательное чтение большой таблицы считается регрессией.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final int FACULTIES = 200;
+    private static final int STUDENTS = 20_000;
+    private static final int LARGE_TABLE_ROWS = 1_000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private StudentStatistics studentStatistics;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private FacultyRepository facultyRepository;
+
+    @Autowired
+    private AvatarRepository avatarRepository;
+
+    @Autowired
+    private TableVersionRepository tableVersionRepository;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private Set<String> largeTables;
+    private long studentId;
+    private long facultyId;
+    private long avatarId;
+
+    record QueryCase(String name, Runnable call, Object[] params, boolean fullScan) {
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @BeforeAll
+    public void seed() {
+        jdbcTemplate.update("insert into faculty(id, name, color) "
+                + "select nextval('faculty_seq'), 'Факультет ' || g, 'Цвет ' || g % 10 "
+                + "from generate_series(1, ?) g", FACULTIES);
+        jdbcTemplate.update("with f as (select array_agg(id order by id) ids from faculty) "
+                + "insert into student(id, name, age, faculty_id) "
+                + "select nextval('student_seq'), 'Student ' || g, 16 + g % 80, f.ids[1 + g % ?] "
+                + "from generate_series(1, ?) g, f", FACULTIES, STUDENTS);
+        jdbcTemplate.update("insert into avatar(id, file_path, file_size, media_type, student_id, content_hash) "
+                + "select nextval('avatar_seq'), '/tmp/avatar-' || id, 1, 'image/png', id, md5(id::text) "
+                + "from student");
+        jdbcTemplate.execute("vacuum analyze faculty, student, avatar");
+        largeTables = Set.copyOf(jdbcTemplate.queryForList("select relname::text from pg_class "
+                + "where relname in ('faculty', 'student', 'avatar') and relkind = 'r' and reltuples >= ?",
+                String.class, LARGE_TABLE_ROWS));
+        studentId = jdbcTemplate.queryForObject("select max(id) from student", Long.class);
+        facultyId = jdbcTemplate.queryForObject("select max(id) from faculty", Long.class);
+        avatarId = jdbcTemplate.queryForObject("select max(id) from avatar", Long.class);
+    }
+
+    @AfterAll
+    public void cleanUp() {
+        jdbcTemplate.update("delete from avatar");
+        jdbcTemplate.update("delete from student");
+        jdbcTemplate.update("delete from faculty");
+        entityManagerFactory.getCache().evictAll();
+        studentStatistics.reconcile();
+    }
+
+    Stream<QueryCase> queries() {
+        PageRequest page = PageRequest.of(0, 10);
+        return Stream.of(
+                new QueryCase("StudentRepository.findById",
+                        () -> studentRepository.findById(studentId), params(studentId), false),
+                new QueryCase("StudentRepository.findByAge",
+                        () -> studentRepository.findByAge(20), params(20), false),
+                new QueryCase("StudentRepository.findStudentByAgeBetween",
+                        () -> studentRepository.findStudentByAgeBetween(20, 21), params(20, 21), false),
+                new QueryCase("StudentRepository.findRepresentationVersionById",
+                        () -> studentRepository.findRepresentationVersionById(studentId), params(studentId), false),
+                new QueryCase("StudentRepository.findStudentById",
+                        () -> studentRepository.findStudentById(studentId), params(studentId), false),
+                new QueryCase("StudentRepository.findStudentsByFaculty_Id",
+                        () -> studentRepository.findStudentsByFaculty_Id(facultyId), params(facultyId), false),
+                new QueryCase("StudentRepository.countByFaculty_Id",
+                        () -> studentRepository.countByFaculty_Id(facultyId), params(facultyId), false),
+                new QueryCase("StudentRepository.getAllStudents",
+                        studentRepository::getAllStudents, params(), true),
+                new QueryCase("StudentRepository.getAverageAgeOfStudents",
+                        studentRepository::getAverageAgeOfStudents, params(), true),
+                new QueryCase("StudentRepository.findTop5ByOrderByIdDesc",
+                        studentRepository::findTop5ByOrderByIdDesc, params(5), false),
+                new QueryCase("StudentRepository.getSixFirstStudent",
+                        studentRepository::getSixFirstStudent, params(), false),
+                new QueryCase("StudentRepository.findUpperCaseNamesStartingWith",
+                        () -> studentRepository.findUpperCaseNamesStartingWith("A"), params("A%"), false),
+                new QueryCase("StudentRepository.findAverageAge",
+                        studentRepository::findAverageAge, params(), true),
+                new QueryCase("StudentRepository.getAgeTotals",
+                        studentRepository::getAgeTotals, params(), true),
+                new QueryCase("StudentRepository.countStudentsByFaculty",
+                        studentRepository::countStudentsByFaculty, params(), true),
+                new QueryCase("StudentRepository.streamAll",
+                        () -> studentRepository.streamAll().findFirst(), params(), true),
+                new QueryCase("StudentRepository.patch",
+                        () -> studentRepository.patch(studentId, "Student 1", 20, facultyId, 0L),
+                        params(studentId, "Student 1", 20, facultyId, 0L, 0L), false),
+                new QueryCase("FacultyRepository.findByColor",
+                        () -> facultyRepository.findByColor("Цвет 1"), params("Цвет 1"), false),
+                new QueryCase("FacultyRepository.findVersionById",
+                        () -> facultyRepository.findVersionById(facultyId), params(facultyId), false),
+                new QueryCase("FacultyRepository.findFirstFacultyByNameIgnoreCase",
+                        () -> facultyRepository.findFirstFacultyByNameIgnoreCase("Факультет 1"),
+                        params("Факультет 1", 1), false),
+                new QueryCase("FacultyRepository.findFirstFacultyByColorIgnoreCase",
+                        () -> facultyRepository.findFirstFacultyByColorIgnoreCase("Цвет 1"),
+                        params("Цвет 1", 1), false),
+                new QueryCase("FacultyRepository.findFacultyByStudentId",
+                        () -> facultyRepository.findFacultyByStudentId(studentId), params(studentId), false),
+                new QueryCase("FacultyRepository.findMaxLengthName",
+                        facultyRepository::findMaxLengthName, params(), false),
+                new QueryCase("FacultyRepository.findSummaries",
+                        facultyRepository::findSummaries, params(), true),
+                new QueryCase("FacultyRepository.patch",
+                        () -> facultyRepository.patch(facultyId, "Факультет 1", "Цвет 1", 0L),
+                        params(facultyId, "Факультет 1", "Цвет 1", 0L, 0L), false),
+                new QueryCase("AvatarRepository.findAvatarByStudent_Id",
+                        () -> avatarRepository.findAvatarByStudent_Id(studentId), params(studentId), false),
+                new QueryCase("AvatarRepository.findAll(Pageable)",
+                        () -> avatarRepository.findAll(page).getContent(), params(0, 10), true),
+                new QueryCase("AvatarRepository.countByFilePath",
+                        () -> avatarRepository.countByFilePath("/tmp/avatar-1"), params("/tmp/avatar-1"), false),
+                new QueryCase("AvatarRepository.findFirstByContentHashAndDataIsNotNull",
+                        () -> avatarRepository.findFirstByContentHashAndDataIsNotNull("abc"),
+                        params("abc", 1), false),
+                new QueryCase("AvatarRepository.updatePreview",
+                        () -> avatarRepository.updatePreview(avatarId, "abc", null), params(null, avatarId, "abc"), false),
+                new QueryCase("AvatarRepository.markPreviewFailed",
+                        () -> avatarRepository.markPreviewFailed(avatarId, "abc"), params(avatarId, "abc"), false),
+                new QueryCase("AvatarRepository.findPreviewsByStudentIds",
+                        () -> avatarRepository.findPreviewsByStudentIds(List.of(studentId)), params(studentId), false),
+                new QueryCase("AvatarRepository.findPreviewsByFacultyId",
+                        () -> avatarRepository.findPreviewsByFacultyId(facultyId, 0, page),
+                        params(facultyId, 0L, 0, 11), false),
+                new QueryCase("TableVersionRepository.findByTableNameIn",
+                        () -> tableVersionRepository.findByTableNameIn(List.of("student")), params("student"), false),
+                new QueryCase("TableVersionRepository.compact",
+                        tableVersionRepository::compact, params(), false),
+                new QueryCase("AvatarRepository.findMetadataAfter",
+                        () -> avatarRepository.findMetadataAfter(avatarId - 20, page),
+                        params(avatarId - 20, 0, 11), false));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    public void queryDoesNotScanLargeTables(QueryCase query) throws JsonProcessingException {
+        String sql = captureSql(query.call());
+        JsonNode plan = explain(sql, query.params());
+        List<String> seqScans = new ArrayList<>();
+        collectSeqScans(plan, seqScans);
+        if (query.fullScan()) {
+            return;
+        }
+        Assertions.assertThat(seqScans)
+                .as("Seq Scan по большим таблицам в плане %s:%n%s%n%s", query.name(), sql, plan.toPrettyString())
+                .isEmpty();
+    }
+
+    /**
+     * Каждый метод, объявленный в репозиториях приложения и их пользовательских фрагментах,
+     * должен иметь случай в {@link #queries()}, иначе новый запрос пройдет мимо проверки плана.
+     */
+    @Test
+    public void everyRepositoryMethodHasQueryCase() {
+        Set<String> covered = queries()
+                .map(query -> query.name().replaceFirst("\\(.*\\)$", ""))
+                .collect(Collectors.toSet());
+        Repositories repositories = new Repositories(applicationContext);
+        List<String> missing = new ArrayList<>();
+        for (Class<?> domainType : repositories) {
+            Class<?> repository = repositories.getRepositoryInformationFor(domainType).orElseThrow()
+                    .getRepositoryInterface();
+            if (!repository.getPackageName().equals(QueryPlanTest.class.getPackageName())) {
+                continue;
+            }
+            declaredMethods(repository)
+                    .map(method -> repository.getSimpleName() + "." + method.getName())
+                    .filter(name -> !covered.contains(name))
+                    .forEach(missing::add);
+        }
+        Assertions.assertThat(missing).as("Методы репозиториев без случая в queries()").isEmpty();
+    }
+
+    /**
+     * Абстрактные методы интерфейса репозитория и интерфейсов из этого же пакета, то есть
+     * без унаследованных методов Spring Data, которые не переопределены.
+     */
+    private static Stream<Method> declaredMethods(Class<?> repository) {
+        return Stream.concat(Stream.of(repository), Arrays.stream(repository.getInterfaces()))
+                .filter(type -> type.getPackageName().equals(repository.getPackageName()))
+                .flatMap(type -> Arrays.stream(type.getDeclaredMethods()))
+                .filter(method -> Modifier.isAbstract(method.getModifiers()) && !method.isSynthetic());
+    }
+
+    private String captureSql(Runnable call) {
+        entityManagerFactory.getCache().evictAll();
+        return transactionTemplate.execute(status -> {
+            status.setRollbackOnly();
+            SqlStatementCounter.reset();
+            call.run();
+            List<String> statements = SqlStatementCounter.getStatements();
+            Assertions.assertThat(statements).isNotEmpty();
+            // Для Page следом идет count-запрос, проверяем основной
+            return statements.get(0);
+        });
+    }
+
+    private JsonNode explain(String sql, Object[] params) throws JsonProcessingException {
+        String json = jdbcTemplate.queryForObject("explain (format json) " + sql, String.class, params);
+        return objectMapper.readTree(json).get(0).get("Plan");
+    }
+
+    private void collectSeqScans(JsonNode node, List<String> seqScans) {
+        if ("Seq Scan".equals(node.path("Node Type").asText())
+                && largeTables.contains(node.path("Relation Name").asText())) {
+            seqScans.add(node.path("Relation Name").asText());
+        }
+        for (JsonNode child : node.path("Plans")) {
+            collectSeqScans(child, seqScans);
+        }
+    }
+
+    private static Object[] params(Object... params) {
+        return params;
+    }
+}
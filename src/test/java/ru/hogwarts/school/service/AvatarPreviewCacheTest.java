@@ -0,0 +1,101 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+class AvatarPreviewCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AvatarPreviewCache cache = new AvatarPreviewCache(DataSize.ofBytes(1024), DataSize.ofBytes(256),
+            DataSize.ofBytes(64), meterRegistry);
+
+    @Test
+    public void previewSpanningSeveralBlocksIsReturnedIntact() {
+        byte[] data = filled(300, 7);
+        cache.put(1, cache.stamp(), "image/jpeg", data);
+
+        AvatarPreviewCache.CachedPreview cached = cache.get(1);
+        Assertions.assertThat(cached.mediaType()).isEqualTo("image/jpeg");
+        Assertions.assertThat(cached.toByteArray()).isEqualTo(data);
+        Assertions.assertThat(cache.residentBytes()).isEqualTo(300);
+        Assertions.assertThat(cache.get(2)).isNull();
+        Assertions.assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        Assertions.assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void previewNotReadSinceLastSweepIsEvicted() {
+        cache.put(1, cache.stamp(), "image/png", filled(400, 1));
+        cache.put(2, cache.stamp(), "image/png", filled(400, 2));
+        cache.get(1);
+        cache.put(3, cache.stamp(), "image/png", filled(400, 3));
+
+        Assertions.assertThat(cache.get(2)).isNull();
+        Assertions.assertThat(cache.get(1).toByteArray()).isEqualTo(filled(400, 1));
+        Assertions.assertThat(cache.get(3).toByteArray()).isEqualTo(filled(400, 3));
+        Assertions.assertThat(cache.residentBytes()).isEqualTo(800);
+        Assertions.assertThat(meterRegistry.get("cache.evictions").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void previewBeingWrittenKeepsItsBlocksUntilClosed() throws Exception {
+        byte[] data = filled(400, 1);
+        cache.put(1, cache.stamp(), "image/png", data);
+        AvatarPreviewCache.CachedPreview reading = cache.get(1);
+        cache.invalidate(1);
+        cache.put(2, cache.stamp(), "image/png", filled(400, 2));
+        cache.put(3, cache.stamp(), "image/png", filled(400, 3));
+
+        Assertions.assertThat(cache.get(2)).isNull();
+        Assertions.assertThat(cache.residentBytes()).isEqualTo(800);
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        reading.writeTo(os);
+        Assertions.assertThat(os.toByteArray()).isEqualTo(data);
+
+        reading.close();
+        reading.close();
+        Assertions.assertThat(cache.residentBytes()).isEqualTo(400);
+        cache.put(2, cache.stamp(), "image/png", filled(400, 2));
+        Assertions.assertThat(cache.get(2).toByteArray()).isEqualTo(filled(400, 2));
+        Assertions.assertThat(cache.get(3).toByteArray()).isEqualTo(filled(400, 3));
+    }
+
+    @Test
+    public void loadStartedBeforeInvalidationIsNotStored() {
+        cache.put(1, cache.stamp(), "image/png", filled(100, 1));
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+        cache.put(1, stamp, "image/png", filled(100, 1));
+
+        Assertions.assertThat(cache.get(1)).isNull();
+        Assertions.assertThat(cache.residentBytes()).isZero();
+    }
+
+    @Test
+    public void invalidationOfAnotherStudentKeepsConcurrentLoad() {
+        long stamp = cache.stamp();
+        cache.invalidate(2);
+        cache.put(1, stamp, "image/png", filled(100, 1));
+
+        Assertions.assertThat(cache.get(1).toByteArray()).isEqualTo(filled(100, 1));
+    }
+
+    @Test
+    public void previewLargerThanBudgetIsNotStored() {
+        cache.put(1, cache.stamp(), "image/png", filled(2048, 1));
+
+        Assertions.assertThat(cache.get(1)).isNull();
+        Assertions.assertThat(cache.size()).isZero();
+    }
+
+    private static byte[] filled(int length, int seed) {
+        byte[] data = new byte[length];
+        Arrays.setAll(new int[length], i -> data[i] = (byte) (i * 31 + seed));
+        return data;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.util.unit.DataSize;
+import ru.hogwarts.school.repository.AvatarRepository;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+class AvatarServiceTest {
+
+    private final AvatarPreviewCache cache = new AvatarPreviewCache(DataSize.ofBytes(1024), DataSize.ofBytes(256),
+            DataSize.ofBytes(64), new SimpleMeterRegistry());
+    private final AvatarRepository avatarRepository = Mockito.mock(AvatarRepository.class);
+    private final AvatarService avatarService = new AvatarService(avatarRepository, cache);
+
+    @Test
+    public void cachedPreviewsAreReleasedWhenLookupFails() {
+        cache.put(1, cache.stamp(), "image/png", new byte[100]);
+        Mockito.when(avatarRepository.findPreviewsByStudentIds(anyCollection()))
+                .thenThrow(new DataAccessResourceFailureException("нет соединения"));
+
+        Assertions.assertThatThrownBy(() -> avatarService.findPreviews(List.of(1L, 2L)))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        cache.invalidate(1);
+        Assertions.assertThat(cache.residentBytes()).isZero();
+    }
+}
@@ -0,0 +1,78 @@
+package ru.hogwarts.school.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.TaskExecutorStatistics;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+class BackgroundTaskExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void callerRunsIsCountedApartFromRejections() throws Exception {
+        BackgroundTaskExecutor executor = executor("caller-runs");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Void> blocking = executor.submit(() -> await(release));
+            CompletableFuture<Void> queued = executor.submit(() -> { });
+            Thread[] ranOn = new Thread[1];
+            executor.submit(() -> ranOn[0] = Thread.currentThread()).get();
+
+            release.countDown();
+            CompletableFuture.allOf(blocking, queued).get();
+            TaskExecutorStatistics statistics = executor.getStatistics();
+            Assertions.assertThat(ranOn[0]).isSameAs(Thread.currentThread());
+            Assertions.assertThat(statistics.callerRunsCount()).isEqualTo(1);
+            Assertions.assertThat(statistics.rejectedCount()).isZero();
+            Assertions.assertThat(counter("executor.caller.runs")).isEqualTo(1);
+            Assertions.assertThat(counter("executor.rejected")).isZero();
+            Assertions.assertThat(meterRegistry.get("executor.pool.size")
+                    .tag("name", BackgroundTaskExecutor.METRICS_NAME).gauge().value()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void abortPolicyCountsRejection() throws Exception {
+        BackgroundTaskExecutor executor = executor("abort");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.submit(() -> await(release));
+            executor.submit(() -> { });
+            CompletableFuture<Void> rejected = executor.submit(() -> { });
+
+            Assertions.assertThatThrownBy(rejected::get).isInstanceOf(ExecutionException.class);
+            Assertions.assertThat(executor.getStatistics().rejectedCount()).isEqualTo(1);
+            Assertions.assertThat(executor.getStatistics().callerRunsCount()).isZero();
+            Assertions.assertThat(counter("executor.rejected")).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private BackgroundTaskExecutor executor(String rejectionPolicy) {
+        return new BackgroundTaskExecutor(BackgroundTaskExecutor.MODE_PLATFORM, 1, 1, rejectionPolicy,
+                Duration.ofSeconds(5), meterRegistry);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.get(name).tag("name", BackgroundTaskExecutor.METRICS_NAME).functionCounter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.hogwarts.school.service;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.SumReport;
+import ru.hogwarts.school.dto.SumResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+class SumServiceTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(1);
+    private final SumService sumService = new SumService(pool, 1_000_000, "closed-form", 1);
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void computationsOverLimitAreRejected() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        CompletableFuture<SumReport> queued = sumService.sum(10, List.of(SumStrategy.SEQUENTIAL));
+
+        Assertions.assertThatThrownBy(() -> sumService.sum(10, List.of(SumStrategy.SEQUENTIAL)))
+                .isInstanceOf(RejectedExecutionException.class);
+
+        release.countDown();
+        Assertions.assertThat(queued.get().results()).extracting(SumResult::sum).containsExactly(55L);
+        Assertions.assertThat(sumService.sum(10, List.of(sumService.getDefaultStrategy())).get().results())
+                .extracting(SumResult::strategy, SumResult::sum)
+                .containsExactly(Assertions.tuple(SumStrategy.CLOSED_FORM, 55L));
+    }
+}